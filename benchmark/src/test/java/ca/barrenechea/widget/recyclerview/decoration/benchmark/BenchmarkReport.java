@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration.benchmark;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Appends benchmark results to a CSV file, so runs of two builds can be compared.
+ */
+final class BenchmarkReport {
+    private static final File FILE = new File("build/reports/benchmark/decorations.csv");
+
+    // a system property rather than a static field, as Robolectric may load this class more than
+    // once per run
+    private static final String STARTED_PROPERTY = "header-decor.benchmark.report";
+
+    private BenchmarkReport() {
+    }
+
+    static void add(@NonNull String benchmark, @NonNull String decoration, boolean inline,
+            int itemCount, int sectionSize, @NonNull BenchmarkRunner.Result result) {
+
+        try {
+            write(String.format(Locale.US, "%s,%s,%b,%d,%d,%.1f,%.1f,%.2f,%.1f%n",
+                    benchmark, decoration, inline, itemCount, sectionSize, result.opsPerSecond,
+                    result.opsPerSecondError, result.bytesPerOp, result.bytesPerSecond()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write " + FILE, e);
+        }
+    }
+
+    private static void write(@NonNull String row) throws IOException {
+        final boolean started = System.getProperty(STARTED_PROPERTY) != null;
+
+        if (!started) {
+            //noinspection ResultOfMethodCallIgnored
+            FILE.getParentFile().mkdirs();
+            System.setProperty(STARTED_PROPERTY, "true");
+        }
+
+        try (Writer writer = new FileWriter(FILE, started)) {
+            if (!started) {
+                writer.write("benchmark,decoration,inline,items,section,ops_per_s,ops_per_s_error,"
+                        + "bytes_per_op,bytes_per_s\n");
+            }
+
+            writer.write(row);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration.benchmark;
+
+import androidx.annotation.NonNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small JMH-style harness: runs an operation for a few warmup iterations, then for a few timed
+ * iterations, and reports the throughput and the bytes the calling thread allocated per call.
+ * <p>
+ * JMH forks its own JVMs and class loaders, which doesn't work from inside the Robolectric
+ * sandbox that provides the Android classes, so the same warmup and measurement structure is
+ * kept here in-process.
+ */
+final class BenchmarkRunner {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // the clock is only read between batches, to keep it out of the measurement
+    private static final int BATCH_SIZE = 64;
+
+    // every operation's result ends up here, so the JIT can't drop the work that produced it
+    static volatile long sink;
+
+    interface Operation {
+        /**
+         * @param index the number of calls made before this one, for operations that vary their
+         * input from call to call
+         * @return a value derived from the work done, which is consumed by the runner
+         */
+        long run(int index);
+    }
+
+    static final class Result {
+        final double opsPerSecond;
+        final double opsPerSecondError;
+        final double bytesPerOp;
+
+        Result(double opsPerSecond, double opsPerSecondError, double bytesPerOp) {
+            this.opsPerSecond = opsPerSecond;
+            this.opsPerSecondError = opsPerSecondError;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        /**
+         * @return the bytes allocated per second at the measured throughput
+         */
+        double bytesPerSecond() {
+            return bytesPerOp * opsPerSecond;
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean bean;
+    private final long threadId;
+
+    BenchmarkRunner() {
+        this.bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threadId = Thread.currentThread().getId();
+    }
+
+    @NonNull
+    Result run(@NonNull Operation operation) {
+        int index = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            index = iterate(operation, index, null);
+        }
+
+        final double[] throughput = new double[MEASURED_ITERATIONS];
+        final long[] allocation = new long[1];
+        long totalOps = 0;
+        long totalBytes = 0;
+
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            final int start = index;
+            final long startNanos = System.nanoTime();
+            index = iterate(operation, index, allocation);
+            final long elapsed = System.nanoTime() - startNanos;
+
+            final int ops = index - start;
+            throughput[i] = ops * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            totalOps += ops;
+            totalBytes += allocation[0];
+        }
+
+        double mean = 0;
+        for (double value : throughput) {
+            mean += value;
+        }
+        mean /= MEASURED_ITERATIONS;
+
+        double variance = 0;
+        for (double value : throughput) {
+            variance += (value - mean) * (value - mean);
+        }
+        final double deviation = Math.sqrt(variance / (MEASURED_ITERATIONS - 1));
+
+        return new Result(mean, deviation, totalOps == 0 ? 0 : totalBytes / (double) totalOps);
+    }
+
+    /**
+     * Runs the operation in batches until an iteration's worth of time has passed.
+     *
+     * @param allocation receives the bytes allocated during the iteration, if not null
+     * @return the call index to continue from
+     */
+    private int iterate(@NonNull Operation operation, int index, long[] allocation) {
+        final long startBytes = bean.getThreadAllocatedBytes(threadId);
+        final long deadline = System.nanoTime() + ITERATION_NANOS;
+        long result = 0;
+
+        do {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                result ^= operation.run(index++);
+            }
+        } while (System.nanoTime() < deadline);
+
+        sink ^= result;
+
+        if (allocation != null) {
+            allocation[0] = bean.getThreadAllocatedBytes(threadId) - startBytes;
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration.benchmark;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.barrenechea.widget.recyclerview.decoration.DoubleHeaderDecoration;
+import ca.barrenechea.widget.recyclerview.decoration.StickyHeaderDecoration;
+import ca.barrenechea.widget.recyclerview.decoration.SyntheticAdapter;
+
+/**
+ * Measures the throughput and allocations of the decoration callbacks RecyclerView makes on
+ * every frame, over a range of list sizes, section sizes and rendering modes.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+public class DecorationBenchmark {
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    private static final int[] ITEM_COUNTS = {100, 10_000, 1_000_000};
+    private static final int[] SECTION_SIZES = {1, 10, 100, 1000};
+    private static final String STICKY = "sticky";
+    private static final String DOUBLE = "double";
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0} inline={1} items={2} section={3}")
+    public static List<Object[]> parameters() {
+        final List<Object[]> parameters = new ArrayList<>();
+
+        for (String decoration : new String[]{STICKY, DOUBLE}) {
+            for (boolean inline : new boolean[]{false, true}) {
+                for (int itemCount : ITEM_COUNTS) {
+                    for (int sectionSize : SECTION_SIZES) {
+                        parameters.add(new Object[]{decoration, inline, itemCount, sectionSize});
+                    }
+                }
+            }
+        }
+
+        return parameters;
+    }
+
+    private final String decorationName;
+    private final boolean inline;
+    private final int itemCount;
+    private final int sectionSize;
+
+    private RecyclerView recyclerView;
+    private RecyclerView.ItemDecoration decoration;
+    private RecyclerView.State state;
+    private Canvas canvas;
+    private Rect outRect;
+
+    public DecorationBenchmark(String decoration, boolean inline, int itemCount,
+            int sectionSize) {
+
+        this.decorationName = decoration;
+        this.inline = inline;
+        this.itemCount = itemCount;
+        this.sectionSize = sectionSize;
+    }
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        final SyntheticAdapter adapter = new SyntheticAdapter(itemCount, sectionSize);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+
+        state = new RecyclerView.State();
+        canvas = new Canvas();
+        outRect = new Rect();
+
+        if (STICKY.equals(decorationName)) {
+            decoration = new StickyHeaderDecoration(adapter, inline);
+        } else {
+            decoration = new DoubleHeaderDecoration(adapter, inline);
+        }
+
+        recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+        recyclerView.addItemDecoration(decoration);
+
+        // start in the middle of the list, away from the special cased first position
+        layoutManager.scrollToPositionWithOffset(itemCount / 2, 0);
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void getItemOffsets() {
+        final int count = recyclerView.getChildCount();
+
+        report("getItemOffsets", new BenchmarkRunner().run(new BenchmarkRunner.Operation() {
+            @Override
+            public long run(int index) {
+                final View child = recyclerView.getChildAt(index % count);
+                decoration.getItemOffsets(outRect, child, recyclerView, state);
+                return outRect.top;
+            }
+        }));
+    }
+
+    @Test
+    public void onDrawOver() {
+        report("onDrawOver", new BenchmarkRunner().run(new BenchmarkRunner.Operation() {
+            @Override
+            public long run(int index) {
+                // move the children back and forth by a pixel, so every frame places its headers
+                // instead of replaying the last frame
+                recyclerView.offsetChildrenVertical((index & 1) == 0 ? -1 : 1);
+                decoration.onDrawOver(canvas, recyclerView, state);
+                return index;
+            }
+        }));
+    }
+
+    @Test
+    public void onDrawOverUnchanged() {
+        report("onDrawOverUnchanged", new BenchmarkRunner().run(new BenchmarkRunner.Operation() {
+            @Override
+            public long run(int index) {
+                decoration.onDrawOver(canvas, recyclerView, state);
+                return index;
+            }
+        }));
+    }
+
+    @Test
+    public void findHeaderViewUnder() {
+        decoration.onDrawOver(canvas, recyclerView, state);
+
+        report("findHeaderViewUnder", new BenchmarkRunner().run(new BenchmarkRunner.Operation() {
+            @Override
+            public long run(int index) {
+                final float x = WIDTH / 2f;
+                final float y = (index * 37) % HEIGHT;
+                final View header;
+
+                if (decoration instanceof StickyHeaderDecoration) {
+                    header = ((StickyHeaderDecoration) decoration).findHeaderViewUnder(x, y);
+                } else {
+                    header = ((DoubleHeaderDecoration) decoration).findHeaderViewUnder(x, y);
+                }
+
+                return header != null ? header.getTop() : -1;
+            }
+        }));
+    }
+
+    private void report(@NonNull String benchmark, @NonNull BenchmarkRunner.Result result) {
+        BenchmarkReport.add(benchmark, decorationName, inline, itemCount, sectionSize, result);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * An adapter data observer that keeps track of the adapter it is registered with, so it can move
+ * to a new adapter or be unregistered without the caller holding on to the old one.
+ */
+abstract class AdapterObserver extends RecyclerView.AdapterDataObserver {
+    private RecyclerView.Adapter observed;
+
+    /**
+     * Starts observing the given adapter, if it isn't observed already, after unregistering from
+     * the adapter observed before.
+     */
+    void attach(@Nullable RecyclerView.Adapter adapter) {
+        if (adapter == observed) {
+            return;
+        }
+
+        detach();
+
+        if (adapter != null) {
+            adapter.registerAdapterDataObserver(this);
+            observed = adapter;
+        }
+
+        onAttached();
+    }
+
+    /**
+     * Stops observing the adapter, if any.
+     */
+    void detach() {
+        if (observed != null) {
+            observed.unregisterAdapterDataObserver(this);
+            observed = null;
+            onDetached();
+        }
+    }
+
+    boolean isAttached() {
+        return observed != null;
+    }
+
+    @Nullable
+    RecyclerView.Adapter getObserved() {
+        return observed;
+    }
+
+    /**
+     * Called after the observer moved to a new adapter, or to none.
+     */
+    void onAttached() {
+    }
+
+    /**
+     * Called after the observer stopped observing an adapter. Notifications are missed from
+     * then on, so anything derived from them should be dropped.
+     */
+    void onDetached() {
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+
+/**
+ * The adapter observers of a decoration, detached together when the decoration is detached or its
+ * RecyclerView leaves the window, so they don't keep receiving, and holding on to, an adapter the
+ * decoration no longer draws. The observers attach again the next time the decoration is used.
+ */
+final class AdapterObservers implements View.OnAttachStateChangeListener {
+    private final ArrayList<AdapterObserver> observers = new ArrayList<>();
+    private RecyclerView parent;
+
+    void add(@NonNull AdapterObserver observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+        }
+    }
+
+    /**
+     * Detaches the observer and stops tracking it.
+     */
+    void remove(@NonNull AdapterObserver observer) {
+        observer.detach();
+        observers.remove(observer);
+    }
+
+    /**
+     * Follows the window attachment of the given RecyclerView.
+     */
+    void watch(@NonNull RecyclerView parent) {
+        if (parent == this.parent) {
+            return;
+        }
+
+        if (this.parent != null) {
+            this.parent.removeOnAttachStateChangeListener(this);
+        }
+
+        parent.addOnAttachStateChangeListener(this);
+        this.parent = parent;
+    }
+
+    /**
+     * Detaches every observer and stops following the RecyclerView.
+     */
+    void detach() {
+        detachObservers();
+
+        if (parent != null) {
+            parent.removeOnAttachStateChangeListener(this);
+            parent = null;
+        }
+    }
+
+    private void detachObservers() {
+        for (int i = 0; i < observers.size(); i++) {
+            observers.get(i).detach();
+        }
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View view) {
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View view) {
+        detachObservers();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * The children of a RecyclerView as of the current frame: the views, their adapter positions and
+ * where they are. Taking it walks the children once, so decorations sharing a snapshot through a
+ * {@link CompositeDecoration} don't each look up every child's adapter position again.
+ */
+final class ChildSnapshot {
+    private int count;
+    private View[] views = new View[16];
+    private int[] positions = new int[16];
+    private int[] lefts = new int[16];
+    private int[] tops = new int[16];
+
+    // changes whenever a snapshot differs from the one before it
+    private int generation;
+
+    /**
+     * Records the current children of the RecyclerView, and moves to a new generation if
+     * anything changed since the last snapshot.
+     */
+    void update(@NonNull RecyclerView parent) {
+        final int count = parent.getChildCount();
+        boolean unchanged = count == this.count;
+
+        if (count > views.length) {
+            final int capacity = Math.max(count, views.length * 2);
+            views = Arrays.copyOf(views, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            tops = Arrays.copyOf(tops, capacity);
+        }
+
+        for (int i = 0; i < count; i++) {
+            final View child = parent.getChildAt(i);
+            final int position = parent.getChildAdapterPosition(child);
+            final int left = child.getLeft();
+            final int top = (int) child.getY();
+
+            if (unchanged && (position != positions[i]
+                    || left != lefts[i]
+                    || top != tops[i])) {
+                unchanged = false;
+            }
+
+            views[i] = child;
+            positions[i] = position;
+            lefts[i] = left;
+            tops[i] = top;
+        }
+
+        // don't hold on to views that left the RecyclerView
+        for (int i = count; i < this.count; i++) {
+            views[i] = null;
+        }
+
+        this.count = count;
+
+        if (!unchanged) {
+            generation++;
+        }
+    }
+
+    /**
+     * @return a number that changes whenever {@link #update} finds different children
+     */
+    int generation() {
+        return generation;
+    }
+
+    /**
+     * @return the number of children recorded
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return the given child
+     */
+    @NonNull
+    View child(int index) {
+        return views[index];
+    }
+
+    /**
+     * @return the adapter position of the given child, or {@link RecyclerView#NO_POSITION}
+     */
+    int position(int index) {
+        return positions[index];
+    }
+
+    /**
+     * @return the left edge of the given child
+     */
+    int left(int index) {
+        return lefts[index];
+    }
+
+    /**
+     * @return the top edge of the given child, including its translation
+     */
+    int top(int index) {
+        return tops[index];
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws several decorations as the layers of a single item decoration, such as dividers under
+ * sticky headers. Every frame the children and their adapter positions are looked up once and
+ * shared by all of the layers, instead of once per decoration, and each item's adapter position
+ * is looked up once when the offsets of the layers are added up.
+ * <p>
+ * The layers are drawn in the order they were added, each over the ones before it. Adding a
+ * decoration as a layer leaves it unchanged, and its other methods, such as the header hit
+ * testing, work as usual.
+ */
+public class CompositeDecoration extends RecyclerView.ItemDecoration {
+    private final ChildSnapshot children = new ChildSnapshot();
+    private final DecorationLayer[] layers;
+    private final Rect layerOffsets = new Rect();
+
+    private CompositeDecoration(@NonNull DecorationLayer[] layers) {
+        this.layers = layers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
+            @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        final int position = parent.getChildAdapterPosition(view);
+        outRect.setEmpty();
+
+        for (DecorationLayer layer : layers) {
+            layerOffsets.setEmpty();
+            layer.getItemOffsets(layerOffsets, view, position, parent);
+
+            outRect.left += layerOffsets.left;
+            outRect.top += layerOffsets.top;
+            outRect.right += layerOffsets.right;
+            outRect.bottom += layerOffsets.bottom;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @NonNull RecyclerView.State state) {
+        children.update(parent);
+
+        for (DecorationLayer layer : layers) {
+            layer.onDrawOver(canvas, parent, children);
+        }
+    }
+
+    /**
+     * A builder that adds the layers of a composite decoration, from the bottom up.
+     * <p>
+     * Only the children and their adapter positions are shared between the layers. Each header
+     * layer still finds its own section boundaries, and dividers aren't hidden under the sticky
+     * headers drawn over them.
+     */
+    public static class Builder {
+        private final List<DecorationLayer> mLayers = new ArrayList<>();
+
+        /**
+         * Adds a divider layer.
+         *
+         * @param decoration the divider decoration
+         * @return the current instance of the Builder
+         */
+        @NonNull
+        public Builder add(@NonNull DividerDecoration decoration) {
+            mLayers.add(decoration.asLayer());
+            return this;
+        }
+
+        /**
+         * Adds a sticky header layer.
+         *
+         * @param decoration the sticky header decoration
+         * @return the current instance of the Builder
+         */
+        @NonNull
+        public Builder add(@NonNull StickyHeaderDecoration decoration) {
+            mLayers.add(decoration.asLayer());
+            return this;
+        }
+
+        /**
+         * Adds a double header layer.
+         *
+         * @param decoration the double header decoration
+         * @return the current instance of the Builder
+         */
+        @NonNull
+        public Builder add(@NonNull DoubleHeaderDecoration decoration) {
+            mLayers.add(decoration.asLayer());
+            return this;
+        }
+
+        /**
+         * Adds a hierarchical header layer.
+         *
+         * @param decoration the hierarchical header decoration
+         * @return the current instance of the Builder
+         */
+        @NonNull
+        public Builder add(@NonNull HierarchicalHeaderDecoration decoration) {
+            mLayers.add(decoration.asLayer());
+            return this;
+        }
+
+        /**
+         * Instantiates a CompositeDecoration with the added layers.
+         *
+         * @return a properly initialized CompositeDecoration instance
+         */
+        @NonNull
+        public CompositeDecoration build() {
+            return new CompositeDecoration(mLayers.toArray(new DecorationLayer[mLayers.size()]));
+        }
+    }
+}
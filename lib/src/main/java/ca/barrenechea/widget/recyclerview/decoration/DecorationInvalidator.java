@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Invalidates the item decorations of a RecyclerView, so their offsets are requested again.
+ * <p>
+ * A RecyclerView throws if its item decorations are invalidated while it is computing a layout
+ * or a scroll, which is where the decorations measure their headers from {@code getItemOffsets}.
+ * The invalidation is then posted to run after the current pass, and any further requests made
+ * before it runs are folded into it.
+ */
+final class DecorationInvalidator implements Runnable {
+    private RecyclerView parent;
+
+    void invalidate(@NonNull RecyclerView parent) {
+        if (!parent.isComputingLayout()) {
+            parent.invalidateItemDecorations();
+        } else if (this.parent != parent) {
+            if (this.parent != null) {
+                this.parent.removeCallbacks(this);
+            }
+
+            this.parent = parent;
+            parent.post(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        final RecyclerView parent = this.parent;
+        this.parent = null;
+
+        if (parent != null && !parent.isComputingLayout()) {
+            parent.invalidateItemDecorations();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * A decoration drawn as part of a {@link CompositeDecoration}, which looks up each item's adapter
+ * position and takes the {@link ChildSnapshot} of a frame once for all of its layers. Layers wrap
+ * their decoration and pass it the snapshot on every call, so the decoration keeps working on its
+ * own as well.
+ */
+interface DecorationLayer {
+
+    /**
+     * Sets the offsets of the given item, whose adapter position was already looked up.
+     */
+    void getItemOffsets(@NonNull Rect outRect, @NonNull View view, int position,
+            @NonNull RecyclerView parent);
+
+    /**
+     * Draws the layer over the items, reading the children from the composite's snapshot of the
+     * current frame.
+     */
+    void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @NonNull ChildSnapshot children);
+}
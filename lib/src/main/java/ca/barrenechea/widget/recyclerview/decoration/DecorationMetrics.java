@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Counts the work done by a decoration and how long its {@code getItemOffsets} and
+ * {@code onDrawOver} calls take. Metrics are only collected while a {@link Listener} is set on
+ * the decoration; without one, the decoration skips all bookkeeping.
+ * <p>
+ * All values accumulate until {@link #reset()} is called. The metrics are only updated and
+ * reported on the main thread, headers created on a background executor are counted when they
+ * are handed to the header cache. Cache hits and misses are read from the decoration's header
+ * caches, counted from when the listener was set.
+ */
+public final class DecorationMetrics {
+
+    /**
+     * Receives the metrics after every drawn frame.
+     */
+    public interface Listener {
+        /**
+         * Called on the main thread at the end of each {@code onDrawOver} call. The metrics
+         * instance is reused, so copy any values that need to outlive the call.
+         *
+         * @param metrics the metrics of the decoration that was drawn
+         */
+        void onFrameDrawn(@NonNull DecorationMetrics metrics);
+    }
+
+    private final Listener listener;
+    private final HeaderCache[] caches;
+
+    private long headerCreates;
+    private long headerBinds;
+    private long headerMeasures;
+
+    // the cache counts when the metrics were last reset
+    private long cacheHitsBase;
+    private long cacheMissesBase;
+
+    private final Histogram itemOffsetsNanos = new Histogram();
+    private final Histogram drawNanos = new Histogram();
+    private final Histogram drawnPerFrame = new Histogram();
+
+    DecorationMetrics(@NonNull Listener listener, @NonNull HeaderCache... caches) {
+        this.listener = listener;
+        this.caches = caches;
+        this.cacheHitsBase = totalHits();
+        this.cacheMissesBase = totalMisses();
+    }
+
+    /**
+     * @return the number of header view holders created
+     */
+    public long headerCreates() {
+        return headerCreates;
+    }
+
+    /**
+     * @return the number of header binds, including partial rebinds
+     */
+    public long headerBinds() {
+        return headerBinds;
+    }
+
+    /**
+     * @return the number of header measure and layout passes
+     */
+    public long headerMeasures() {
+        return headerMeasures;
+    }
+
+    /**
+     * @return the number of header lookups served from the header cache
+     */
+    public long cacheHits() {
+        return totalHits() - cacheHitsBase;
+    }
+
+    /**
+     * @return the number of header lookups that missed the header cache
+     */
+    public long cacheMisses() {
+        return totalMisses() - cacheMissesBase;
+    }
+
+    /**
+     * @return the nanoseconds spent in each {@code getItemOffsets} call
+     */
+    @NonNull
+    public Histogram itemOffsetsNanos() {
+        return itemOffsetsNanos;
+    }
+
+    /**
+     * @return the nanoseconds spent in each {@code onDrawOver} call
+     */
+    @NonNull
+    public Histogram drawNanos() {
+        return drawNanos;
+    }
+
+    /**
+     * @return the number of headers drawn in each frame, or of divider lines for a
+     * {@link DividerDecoration}, counting the row and column dividers of a grid separately
+     */
+    @NonNull
+    public Histogram drawnPerFrame() {
+        return drawnPerFrame;
+    }
+
+    /**
+     * Sets every counter and histogram back to zero.
+     */
+    public void reset() {
+        headerCreates = 0;
+        headerBinds = 0;
+        headerMeasures = 0;
+        cacheHitsBase = totalHits();
+        cacheMissesBase = totalMisses();
+        itemOffsetsNanos.reset();
+        drawNanos.reset();
+        drawnPerFrame.reset();
+    }
+
+    void onHeaderCreated() {
+        headerCreates++;
+    }
+
+    void onHeaderBound() {
+        headerBinds++;
+    }
+
+    void onHeaderMeasured() {
+        headerMeasures++;
+    }
+
+    void onItemOffsets(long nanos) {
+        itemOffsetsNanos.record(nanos);
+    }
+
+    void onFrameDrawn(long nanos, int drawn) {
+        drawNanos.record(nanos);
+        drawnPerFrame.record(drawn);
+        listener.onFrameDrawn(this);
+    }
+
+    private long totalHits() {
+        long hits = 0;
+        for (HeaderCache cache : caches) {
+            hits += cache.hitCount();
+        }
+        return hits;
+    }
+
+    private long totalMisses() {
+        long misses = 0;
+        for (HeaderCache cache : caches) {
+            misses += cache.missCount();
+        }
+        return misses;
+    }
+
+    /**
+     * A histogram with power of two buckets, so recording a value is a few arithmetic operations
+     * and never allocates. Bucket 0 holds zero and negative values, and bucket {@code i} holds
+     * the values from {@code 2^(i-1)} to {@code 2^i - 1}.
+     */
+    public static final class Histogram {
+        public static final int BUCKET_COUNT = 64;
+
+        private final long[] buckets = new long[BUCKET_COUNT];
+        private long count;
+        private long sum;
+        private long max;
+
+        Histogram() {
+        }
+
+        void record(long value) {
+            final int bucket = value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+            buckets[bucket]++;
+            count++;
+            sum += value;
+
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        void reset() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            sum = 0;
+            max = 0;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return the sum of the recorded values
+         */
+        public long sum() {
+            return sum;
+        }
+
+        /**
+         * @return the largest recorded value, or 0 if nothing was recorded
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * @return the number of recorded values that fell in the given bucket
+         */
+        public long bucketCount(int bucket) {
+            return buckets[bucket];
+        }
+
+        /**
+         * @return the largest value the given bucket holds
+         */
+        public static long bucketUpperBound(int bucket) {
+            if (bucket == 0) {
+                return 0;
+            }
+            return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket it falls in, capped at the
+         * largest recorded value.
+         *
+         * @param percentile the percentile, from 0 to 100
+         * @return the estimate, or 0 if nothing was recorded
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final double clamped = Math.min(100, Math.max(0, percentile));
+            final long rank = (long) Math.ceil(count * clamped / 100);
+            long seen = 0;
+
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+
+                if (seen >= rank && seen > 0) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+
+            return max;
+        }
+    }
+}
@@ -26,25 +26,43 @@
 import androidx.annotation.ColorRes;
 import androidx.annotation.DimenRes;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import android.util.TypedValue;
 import android.view.View;
 
+import java.util.Arrays;
+
 /**
  * A simple divider decoration with customizable colour, height, and left and right padding.
+ * In a {@link GridLayoutManager} it can also draw vertical dividers between the columns.
+ * <p>
+ * The dividers of a frame that fall within the canvas clip are collected into a reused array and
+ * drawn with a single {@link Canvas#drawLines} call, so drawing them doesn't allocate.
  */
 public class DividerDecoration extends RecyclerView.ItemDecoration {
     private int height;
     private int leftPadding;
     private int rightPadding;
+    private boolean gridDividers;
     private Paint paint;
+    private DecorationMetrics metrics;
+
+    // the divider lines of the current frame, four coordinates per line
+    private float[] lines = new float[64];
+    private final Rect clip = new Rect();
 
-    private DividerDecoration(int height, int lPadding, int rPadding, int colour) {
+    private DividerDecoration(int height, int lPadding, int rPadding, int colour,
+            boolean gridDividers) {
         this.height = height;
         this.leftPadding = lPadding;
         this.rightPadding = rPadding;
+        this.gridDividers = gridDividers;
         this.paint = new Paint();
         this.paint.setColor(colour);
+        this.paint.setStrokeWidth(height);
+        this.paint.setStrokeCap(Paint.Cap.BUTT);
     }
 
     /**
@@ -53,20 +71,56 @@ private DividerDecoration(int height, int lPadding, int rPadding, int colour) {
     @Override
     public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
             @NonNull RecyclerView.State state) {
+        draw(canvas, parent, null);
+    }
 
-        int count = parent.getChildCount();
+    /**
+     * Draws the dividers of the children in the given snapshot, or of the RecyclerView's children
+     * if there is none.
+     */
+    private void draw(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @Nullable ChildSnapshot children) {
+
+        final long start = metrics != null ? System.nanoTime() : 0;
+        final int count = children != null ? children.count() : parent.getChildCount();
+        final int spanCount = getGridSpanCount(parent);
+        int size = 0;
 
-        for (int i = 0; i < count; i++) {
-            final View child = parent.getChildAt(i);
-            final int top = child.getBottom();
-            final int bottom = top + height;
+        if (!canvas.getClipBounds(clip)) {
+            clip.set(0, 0, parent.getWidth(), parent.getHeight());
+        }
 
-            int left = child.getLeft() + leftPadding;
-            int right = child.getRight() - rightPadding;
+        // a zero stroke width would draw hairlines rather than nothing
+        if (height > 0) {
+            for (int i = 0; i < count; i++) {
+                final View child = children != null ? children.child(i) : parent.getChildAt(i);
+                final int top = child.getBottom();
+                final int bottom = top + height;
 
-            canvas.save();
-            canvas.drawRect(left, top, right, bottom, paint);
-            canvas.restore();
+                if (bottom <= clip.top || child.getTop() >= clip.bottom) {
+                    continue;
+                }
+
+                if (top < clip.bottom) {
+                    final float y = top + height / 2f;
+                    size = addLine(size, child.getLeft() + leftPadding, y,
+                            child.getRight() - rightPadding, y);
+                }
+
+                if (spanCount > 1 && !isLastColumn(child, spanCount)) {
+                    final float x = child.getRight() + height / 2f;
+                    size = addLine(size, x, child.getTop(), x, bottom);
+                }
+            }
+
+            if (size > 0) {
+                canvas.drawLines(lines, 0, size, paint);
+            }
+        }
+
+        if (metrics != null) {
+            // each divider line takes four coordinates
+            metrics.onFrameDrawn(System.nanoTime() - start, size / 4);
         }
     }
 
@@ -76,7 +130,96 @@ public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
     @Override
     public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
             @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
-        outRect.set(0, 0, 0, height);
+        getItemOffsets(outRect, view, parent);
+    }
+
+    /**
+     * @return a layer of a {@link CompositeDecoration} that draws this decoration with the
+     * composite's snapshot of the children, leaving the decoration itself unchanged
+     */
+    @NonNull
+    DecorationLayer asLayer() {
+        return new DecorationLayer() {
+            @Override
+            public void getItemOffsets(@NonNull Rect outRect, @NonNull View view, int position,
+                    @NonNull RecyclerView parent) {
+                // the dividers don't depend on the adapter position
+                DividerDecoration.this.getItemOffsets(outRect, view, parent);
+            }
+
+            @Override
+            public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+                    @NonNull ChildSnapshot children) {
+                draw(canvas, parent, children);
+            }
+        };
+    }
+
+    private void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
+            @NonNull RecyclerView parent) {
+        final long start = metrics != null ? System.nanoTime() : 0;
+        final int spanCount = getGridSpanCount(parent);
+
+        if (spanCount > 1) {
+            // the column gaps are split between the cells on either side, so every cell of the
+            // grid keeps the same width
+            final GridLayoutManager.LayoutParams params =
+                    (GridLayoutManager.LayoutParams) view.getLayoutParams();
+            final int spanIndex = params.getSpanIndex();
+            final int spanEnd = spanIndex + params.getSpanSize();
+
+            outRect.set(spanIndex * height / spanCount, 0,
+                    height - spanEnd * height / spanCount, height);
+        } else {
+            outRect.set(0, 0, 0, height);
+        }
+
+        if (metrics != null) {
+            metrics.onItemOffsets(System.nanoTime() - start);
+        }
+    }
+
+    private int addLine(int size, float startX, float startY, float stopX, float stopY) {
+        if (size + 4 > lines.length) {
+            lines = Arrays.copyOf(lines, lines.length * 2);
+        }
+
+        lines[size] = startX;
+        lines[size + 1] = startY;
+        lines[size + 2] = stopX;
+        lines[size + 3] = stopY;
+        return size + 4;
+    }
+
+    /**
+     * @return the span count of the grid the column dividers are drawn for, or 1 when they are
+     * not drawn
+     */
+    private int getGridSpanCount(@NonNull RecyclerView parent) {
+        final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+
+        if (!gridDividers || !(layoutManager instanceof GridLayoutManager)) {
+            return 1;
+        }
+
+        return ((GridLayoutManager) layoutManager).getSpanCount();
+    }
+
+    private static boolean isLastColumn(@NonNull View child, int spanCount) {
+        final GridLayoutManager.LayoutParams params =
+                (GridLayoutManager.LayoutParams) child.getLayoutParams();
+        return params.getSpanIndex() + params.getSpanSize() >= spanCount;
+    }
+
+    /**
+     * Starts or stops collecting metrics. While a listener is set, the decoration times its
+     * {@code getItemOffsets} and {@code onDrawOver} calls and counts the dividers drawn, reporting
+     * to the listener after every frame.
+     *
+     * @param listener the listener to report to, or null to stop collecting metrics
+     */
+    public void setMetricsListener(@Nullable DecorationMetrics.Listener listener) {
+        metrics = listener != null ? new DecorationMetrics(listener) : null;
     }
 
     /**
@@ -89,6 +232,7 @@ public static class Builder {
         private int mLPadding;
         private int mRPadding;
         private int mColour;
+        private boolean mGridDividers;
 
         public Builder(@NonNull Context context) {
             mResources = context.getResources();
@@ -224,6 +368,20 @@ public Builder setColor(@ColorInt int color) {
             return this;
         }
 
+        /**
+         * Sets whether vertical dividers are also drawn between the columns when the
+         * RecyclerView uses a GridLayoutManager. They are as thick as the divider height, and
+         * the space for them is split evenly between the cells so the columns keep equal widths.
+         *
+         * @param enabled whether to draw the column dividers
+         * @return the current instance of the Builder
+         */
+        @NonNull
+        public Builder setGridDividers(boolean enabled) {
+            mGridDividers = enabled;
+            return this;
+        }
+
         /**
          * Instantiates a DividerDecoration with the specified parameters.
          *
@@ -231,7 +389,7 @@ public Builder setColor(@ColorInt int color) {
          */
         @NonNull
         public DividerDecoration build() {
-            return new DividerDecoration(mHeight, mLPadding, mRPadding, mColour);
+            return new DividerDecoration(mHeight, mLPadding, mRPadding, mColour, mGridDividers);
         }
     }
 }
@@ -32,7 +32,8 @@
      * Returns the header id for the item at the given position.
      *
      * @param position the item position
-     * @return the header id
+     * @return the header id, or {@link DoubleHeaderDecoration#UNKNOWN_HEADER_ID} for items that
+     * aren't loaded yet
      */
     long getHeaderId(int position);
 
@@ -40,7 +41,8 @@
      * Returns the sub-header id for the item at the given position.
      *
      * @param position the item position
-     * @return the sub-header id
+     * @return the sub-header id, or {@link DoubleHeaderDecoration#UNKNOWN_HEADER_ID} for items
+     * that aren't loaded yet
      */
     long getSubHeaderId(int position);
 
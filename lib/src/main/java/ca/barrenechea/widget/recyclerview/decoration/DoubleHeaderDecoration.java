@@ -20,22 +20,51 @@
 import android.graphics.Rect;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.view.ViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A double sticky header decoration for android's RecyclerView.
+ * <p>
+ * Once the headers and subheaders in view are cached, scrolling and hit testing don't allocate.
  */
 public class DoubleHeaderDecoration extends RecyclerView.ItemDecoration {
+    /**
+     * The header and subheader id for items that aren't loaded yet, such as placeholders in a
+     * paged list. No header or subheader is created or made room for until the item loads.
+     * Unloaded items should report it for both ids. The value is reserved, so it can't be used
+     * as the id of a real header or subheader.
+     */
+    public static final long UNKNOWN_HEADER_ID = Long.MIN_VALUE;
+
+    private static final int LAYER_HEADER = 0;
+    private static final int LAYER_SUB_HEADER = 1;
+
     private DoubleHeaderAdapter adapter;
-    private Map<Long, RecyclerView.ViewHolder> subHeaderCache;
-    private Map<Long, RecyclerView.ViewHolder> headerCache;
+    private HeaderCache subHeaderCache;
+    private HeaderCache headerCache;
+    private SectionIndex subHeaderIndex;
+    private SectionIndex headerIndex;
+    private HeaderUpdateTracker subHeaderUpdateTracker;
+    private HeaderUpdateTracker headerUpdateTracker;
+    private PlaceholderWatcher placeholderWatcher;
+    private final AdapterObservers observers = new AdapterObservers();
+    private HeaderPrefetcher subHeaderPrefetcher;
+    private HeaderPrefetcher headerPrefetcher;
+    private HeaderFrame frame;
+    private HeaderIdWindow headerIds;
+    private RecyclerView recyclerView;
+    private DecorationMetrics metrics;
+    private final DecorationInvalidator invalidator = new DecorationInvalidator();
     private boolean renderInline;
+    private boolean renderSnapshots;
+
+    // the tallest header or subheader measured so far, to cull them before they are bound
+    private int maxHeaderHeight;
 
     /**
      * @param adapter the double header adapter to use
@@ -47,12 +76,35 @@ public DoubleHeaderDecoration(@NonNull DoubleHeaderAdapter adapter) {
     /**
      * @param adapter the double header adapter to use
      */
-    public DoubleHeaderDecoration(@NonNull DoubleHeaderAdapter adapter, boolean renderInline) {
+    public DoubleHeaderDecoration(@NonNull final DoubleHeaderAdapter adapter,
+            boolean renderInline) {
+
         this.adapter = adapter;
 
-        this.subHeaderCache = new HashMap<>();
-        this.headerCache = new HashMap<>();
+        this.subHeaderCache = new HeaderCache();
+        this.headerCache = new HeaderCache();
+        this.frame = new HeaderFrame();
         this.renderInline = renderInline;
+
+        this.headerIds = new HeaderIdWindow(2) {
+            @Override
+            void load(int level, int start, int count, @NonNull long[] out) {
+                if (level == LAYER_HEADER && adapter instanceof HeaderIdRangeProvider) {
+                    ((HeaderIdRangeProvider) adapter).getHeaderIds(start, count, out);
+                    return;
+                } else if (level == LAYER_SUB_HEADER
+                        && adapter instanceof SubHeaderIdRangeProvider) {
+                    ((SubHeaderIdRangeProvider) adapter).getSubHeaderIds(start, count, out);
+                    return;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    out[i] = level == LAYER_HEADER
+                            ? adapter.getHeaderId(start + i)
+                            : adapter.getSubHeaderId(start + i);
+                }
+            }
+        };
     }
 
     /**
@@ -70,6 +122,10 @@ public void clearDoubleHeaderCache() {
      */
     public void clearSubHeaderCache() {
         subHeaderCache.clear();
+
+        if (subHeaderPrefetcher != null) {
+            subHeaderPrefetcher.cancel();
+        }
     }
 
     /**
@@ -78,84 +134,536 @@ public void clearSubHeaderCache() {
      */
     public void clearHeaderCache() {
         headerCache.clear();
+
+        if (headerPrefetcher != null) {
+            headerPrefetcher.cancel();
+        }
+    }
+
+    /**
+     * Sets the maximum number of headers kept in the header cache. The least recently drawn
+     * header is evicted when the cache is full.
+     *
+     * @param size the maximum cache size, or {@link HeaderCache#AUTO_SIZE} to size the cache from
+     * the number of visible children
+     */
+    public void setHeaderCacheSize(int size) {
+        headerCache.setMaxSize(size);
+    }
+
+    /**
+     * Sets the maximum number of subheaders kept in the subheader cache. The least recently drawn
+     * subheader is evicted when the cache is full.
+     *
+     * @param size the maximum cache size, or {@link HeaderCache#AUTO_SIZE} to size the cache from
+     * the number of visible children
+     */
+    public void setSubHeaderCacheSize(int size) {
+        subHeaderCache.setMaxSize(size);
+    }
+
+    /**
+     * @return the header view cache, for reading its size and hit, miss and eviction counts
+     */
+    @NonNull
+    public HeaderCache getHeaderCache() {
+        return headerCache;
+    }
+
+    /**
+     * @return the subheader view cache, for reading its size and hit, miss and eviction counts
+     */
+    @NonNull
+    public HeaderCache getSubHeaderCache() {
+        return subHeaderCache;
+    }
+
+    /**
+     * Enables or disables the section indexes. When enabled, header and subheader boundaries and
+     * ids are looked up in indexes that are built once and then updated from the RecyclerView
+     * adapter's change notifications, instead of being requested from the adapter on every frame.
+     * <p>
+     * The adapter must report every data change through the {@code notify*} methods for the
+     * indexes to stay accurate.
+     *
+     * @param enabled whether to use section indexes
+     */
+    public void setSectionIndexEnabled(boolean enabled) {
+        if (enabled && headerIndex == null) {
+            headerIndex = new SectionIndex() {
+                @Override
+                long getHeaderId(int position) {
+                    return adapter.getHeaderId(position);
+                }
+            };
+            subHeaderIndex = new SectionIndex() {
+                @Override
+                long getHeaderId(int position) {
+                    return adapter.getSubHeaderId(position);
+                }
+            };
+            observers.add(headerIndex);
+            observers.add(subHeaderIndex);
+        } else if (!enabled && headerIndex != null) {
+            observers.remove(headerIndex);
+            observers.remove(subHeaderIndex);
+            headerIndex = null;
+            subHeaderIndex = null;
+        }
+    }
+
+    /**
+     * Enables or disables snapshot rendering. When enabled, each header and subheader is recorded
+     * once after it is bound and measured, and later frames replay the recording with a single
+     * draw call instead of walking the view tree.
+     * <p>
+     * Changes made to a cached header view outside of binding, such as an image that finishes
+     * loading later, are not picked up until the header caches are cleared.
+     *
+     * @param enabled whether to draw headers from recorded snapshots
+     */
+    public void setSnapshotRenderingEnabled(boolean enabled) {
+        renderSnapshots = enabled;
+    }
+
+    /**
+     * Enables or disables background header creation. When an executor is set, the headers and
+     * subheaders of the sections just outside the visible range are created on it ahead of time,
+     * then bound on the main thread, so they are already cached when they scroll in. Headers
+     * needed before their background work completes are still created on the main thread.
+     * <p>
+     * The adapter's header and subheader create methods must be safe to call from the executor's
+     * threads when this is enabled. Headers are always bound on the main thread.
+     *
+     * @param executor the executor to create headers on, or null to create them synchronously
+     */
+    public void setAsyncHeaderExecutor(@Nullable Executor executor) {
+        if (headerPrefetcher != null) {
+            headerPrefetcher.cancel();
+            subHeaderPrefetcher.cancel();
+            headerPrefetcher = null;
+            subHeaderPrefetcher = null;
+        }
+
+        if (executor != null) {
+            headerPrefetcher = new HeaderPrefetcher(headerCache, executor) {
+                @Override
+                long getHeaderId(int position) {
+                    return DoubleHeaderDecoration.this.getHeaderId(position);
+                }
+
+                @Override
+                boolean hasHeader(long id) {
+                    return id != UNKNOWN_HEADER_ID;
+                }
+
+                @NonNull
+                @Override
+                RecyclerView.ViewHolder createHeader(@NonNull ViewGroup parent, int viewType) {
+                    return adapter.onCreateHeaderHolder(parent);
+                }
+
+                @Override
+                void bindHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+                        int position) {
+                    //noinspection unchecked
+                    adapter.onBindHeaderHolder(entry.holder, position);
+
+                    if (metrics != null) {
+                        metrics.onHeaderCreated();
+                        metrics.onHeaderBound();
+                    }
+
+                    measureView(parent, entry);
+                }
+            };
+            subHeaderPrefetcher = new HeaderPrefetcher(subHeaderCache, executor) {
+                @Override
+                long getHeaderId(int position) {
+                    return getSubHeaderId(position);
+                }
+
+                @Override
+                boolean hasHeader(long id) {
+                    return id != UNKNOWN_HEADER_ID;
+                }
+
+                @NonNull
+                @Override
+                RecyclerView.ViewHolder createHeader(@NonNull ViewGroup parent, int viewType) {
+                    return adapter.onCreateSubHeaderHolder(parent);
+                }
+
+                @Override
+                void bindHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+                        int position) {
+                    //noinspection unchecked
+                    adapter.onBindSubHeaderHolder(entry.holder, position);
+
+                    if (metrics != null) {
+                        metrics.onHeaderCreated();
+                        metrics.onHeaderBound();
+                    }
+
+                    measureView(parent, entry);
+                }
+            };
+        }
+    }
+
+    /**
+     * Starts or stops collecting metrics. While a listener is set, the decoration counts header
+     * and subheader creates, binds, measures and cache lookups, and times its
+     * {@code getItemOffsets} and {@code onDrawOver} calls, reporting to the listener after every
+     * frame.
+     *
+     * @param listener the listener to report to, or null to stop collecting metrics
+     */
+    public void setMetricsListener(@Nullable DecorationMetrics.Listener listener) {
+        metrics = listener != null
+                ? new DecorationMetrics(listener, headerCache, subHeaderCache)
+                : null;
+    }
+
+    /**
+     * Sets the callback that decides which cached headers and subheaders to rebind when the
+     * adapter's items change. While set, the decoration follows the adapter's change
+     * notifications, such as the ones dispatched by {@code DiffUtil} or {@code ListAdapter}, and
+     * only the cached headers and subheaders of the sections whose items changed are passed to
+     * the callback, instead of the header caches having to be cleared.
+     *
+     * @param callback the callback, or null to stop following the adapter's changes
+     */
+    public void setHeaderDiffCallback(@Nullable final HeaderDiffCallback callback) {
+        if (headerUpdateTracker != null) {
+            observers.remove(headerUpdateTracker);
+            observers.remove(subHeaderUpdateTracker);
+            headerUpdateTracker = null;
+            subHeaderUpdateTracker = null;
+        }
+
+        if (callback != null) {
+            headerUpdateTracker = new HeaderUpdateTracker() {
+                @Override
+                long getHeaderId(int position) {
+                    return DoubleHeaderDecoration.this.getHeaderId(position);
+                }
+
+                @Override
+                void onHeaderChanged(long headerId) {
+                    if (headerId != UNKNOWN_HEADER_ID
+                            && headerCache.contains(headerId)
+                            && !callback.areHeaderContentsTheSame(headerId)) {
+                        headerCache.markChanged(headerId,
+                                callback.getHeaderChangePayload(headerId));
+                    }
+                }
+
+                @Override
+                void onAllHeadersChanged() {
+                    headerCache.markAllChanged();
+                }
+            };
+
+            subHeaderUpdateTracker = new HeaderUpdateTracker() {
+                @Override
+                long getHeaderId(int position) {
+                    return getSubHeaderId(position);
+                }
+
+                @Override
+                void onHeaderChanged(long subHeaderId) {
+                    if (subHeaderId != UNKNOWN_HEADER_ID
+                            && subHeaderCache.contains(subHeaderId)
+                            && !callback.areSubHeaderContentsTheSame(subHeaderId)) {
+                        subHeaderCache.markChanged(subHeaderId,
+                                callback.getSubHeaderChangePayload(subHeaderId));
+                    }
+                }
+
+                @Override
+                void onAllHeadersChanged() {
+                    subHeaderCache.markAllChanged();
+                }
+            };
+
+            observers.add(headerUpdateTracker);
+            observers.add(subHeaderUpdateTracker);
+
+            if (recyclerView != null) {
+                headerUpdateTracker.attach(recyclerView.getAdapter());
+                subHeaderUpdateTracker.attach(recyclerView.getAdapter());
+            }
+        }
+    }
+
+    /**
+     * Rebinds the cached header with the given id the next time it is drawn, leaving every other
+     * cached header as it is. Nothing happens if the header isn't cached, as it will be bound
+     * when it is created.
+     *
+     * @param headerId the id of the header that changed
+     */
+    public void notifyHeaderChanged(long headerId) {
+        notifyHeaderChanged(headerId, null);
+    }
+
+    /**
+     * Rebinds the cached header with the given id the next time it is drawn, passing the payload
+     * to {@link DoubleHeaderPayloadBinder#onBindHeaderHolder(RecyclerView.ViewHolder, int, List)}
+     * so only the changed part of the header has to be updated. Nothing happens if the header
+     * isn't cached, as it will be bound when it is created.
+     *
+     * @param headerId the id of the header that changed
+     * @param payload the partial update, or null for a full rebind
+     */
+    public void notifyHeaderChanged(long headerId, @Nullable Object payload) {
+        if (headerCache.markChanged(headerId, payload) && recyclerView != null) {
+            recyclerView.invalidate();
+        }
+    }
+
+    /**
+     * Rebinds the cached subheader with the given id the next time it is drawn, leaving every
+     * other cached subheader as it is. Nothing happens if the subheader isn't cached, as it will
+     * be bound when it is created.
+     *
+     * @param subHeaderId the id of the subheader that changed
+     */
+    public void notifySubHeaderChanged(long subHeaderId) {
+        notifySubHeaderChanged(subHeaderId, null);
+    }
+
+    /**
+     * Rebinds the cached subheader with the given id the next time it is drawn, passing the
+     * payload to {@link DoubleHeaderPayloadBinder#onBindSubHeaderHolder(RecyclerView.ViewHolder,
+     * int, List)} so only the changed part of the subheader has to be updated. Nothing happens if
+     * the subheader isn't cached, as it will be bound when it is created.
+     *
+     * @param subHeaderId the id of the subheader that changed
+     * @param payload the partial update, or null for a full rebind
+     */
+    public void notifySubHeaderChanged(long subHeaderId, @Nullable Object payload) {
+        if (subHeaderCache.markChanged(subHeaderId, payload) && recyclerView != null) {
+            recyclerView.invalidate();
+        }
+    }
+
+    private void attachSectionIndexes(@NonNull RecyclerView parent) {
+        if (headerIndex != null) {
+            headerIndex.attach(parent.getAdapter());
+            subHeaderIndex.attach(parent.getAdapter());
+        }
+    }
+
+    private boolean isIndexed() {
+        return headerIndex != null && headerIndex.isAttached();
+    }
+
+    private long getHeaderId(int position) {
+        if (isIndexed()) {
+            return checkLoaded(headerIndex.headerIdAt(position));
+        } else if (headerIds.contains(position)) {
+            return checkLoaded(headerIds.get(LAYER_HEADER, position));
+        }
+        return checkLoaded(adapter.getHeaderId(position));
+    }
+
+    private long getSubHeaderId(int position) {
+        if (isIndexed()) {
+            return checkLoaded(subHeaderIndex.headerIdAt(position));
+        } else if (headerIds.contains(position)) {
+            return checkLoaded(headerIds.get(LAYER_SUB_HEADER, position));
+        }
+        return checkLoaded(adapter.getSubHeaderId(position));
+    }
+
+    private long checkLoaded(long id) {
+        if (id == UNKNOWN_HEADER_ID) {
+            if (placeholderWatcher == null) {
+                placeholderWatcher = new PlaceholderWatcher();
+                observers.add(placeholderWatcher);
+            }
+            placeholderWatcher.onUnknownHeaderId(recyclerView);
+        }
+
+        return id;
+    }
+
+    /**
+     * @return whether both the header and the subheader id of the given position are known
+     */
+    private boolean isLoaded(int position) {
+        return getHeaderId(position) != UNKNOWN_HEADER_ID
+                && getSubHeaderId(position) != UNKNOWN_HEADER_ID;
     }
 
     @NonNull
-    private RecyclerView.ViewHolder getSubHeader(@NonNull RecyclerView parent, int position) {
-        final long key = adapter.getSubHeaderId(position);
+    private HeaderCache.Entry getSubHeader(@NonNull RecyclerView parent, int position) {
+        final long key = getSubHeaderId(position);
 
-        if (subHeaderCache.containsKey(key)) {
-            return subHeaderCache.get(key);
+        final HeaderCache.Entry cached = subHeaderCache.get(key);
+
+        if (cached != null) {
+            if (cached.needsBind) {
+                rebindSubHeader(parent, cached, position);
+            } else if (cached.measuredWidth != parent.getWidth()) {
+                remeasureView(parent, cached);
+            }
+
+            return cached;
         } else {
-            final RecyclerView.ViewHolder holder = adapter.onCreateSubHeaderHolder(parent);
-            final View header = holder.itemView;
+            HeaderCache.Entry entry = subHeaderCache.acquire(0);
+
+            if (entry == null) {
+                entry = new HeaderCache.Entry(adapter.onCreateSubHeaderHolder(parent), 0);
+
+                if (metrics != null) {
+                    metrics.onHeaderCreated();
+                }
+            }
 
             //noinspection unchecked
-            adapter.onBindSubHeaderHolder(holder, position);
-            measureView(parent, header);
-            subHeaderCache.put(key, holder);
+            adapter.onBindSubHeaderHolder(entry.holder, position);
+
+            if (metrics != null) {
+                metrics.onHeaderBound();
+            }
 
-            return holder;
+            measureView(parent, entry);
+            return subHeaderCache.put(key, entry);
         }
     }
 
+    /**
+     * Finds the header drawn under the given point in the last frame.
+     *
+     * @param x the horizontal position, relative to the RecyclerView
+     * @param y the vertical position, relative to the RecyclerView
+     * @return the header view, or null if no header was drawn there
+     */
     @Nullable
     public View findHeaderViewUnder(float x, float y) {
-        for (RecyclerView.ViewHolder holder : headerCache.values()) {
-            final View child = holder.itemView;
-            final float translationX = ViewCompat.getTranslationX(child);
-            final float translationY = ViewCompat.getTranslationY(child);
-
-            if (x >= child.getLeft() + translationX &&
-                    x <= child.getRight() + translationX &&
-                    y >= child.getTop() + translationY &&
-                    y <= child.getBottom() + translationY) {
-                return child;
-            }
-        }
-
-        return null;
+        return frame.findHeaderUnder(LAYER_HEADER, x, y);
     }
 
+    /**
+     * Finds the subheader drawn under the given point in the last frame.
+     *
+     * @param x the horizontal position, relative to the RecyclerView
+     * @param y the vertical position, relative to the RecyclerView
+     * @return the subheader view, or null if no subheader was drawn there
+     */
     @Nullable
     public View findSubHeaderViewUnder(float x, float y) {
-        for (RecyclerView.ViewHolder holder : subHeaderCache.values()) {
-            final View child = holder.itemView;
-            final float translationX = ViewCompat.getTranslationX(child);
-            final float translationY = ViewCompat.getTranslationY(child);
-
-            if (x >= child.getLeft() + translationX &&
-                    x <= child.getRight() + translationX &&
-                    y >= child.getTop() + translationY &&
-                    y <= child.getBottom() + translationY) {
-                return child;
+        return frame.findHeaderUnder(LAYER_SUB_HEADER, x, y);
+    }
+
+    @NonNull
+    private HeaderCache.Entry getHeader(@NonNull RecyclerView parent, int position) {
+        final long key = getHeaderId(position);
+
+        final HeaderCache.Entry cached = headerCache.get(key);
+
+        if (cached != null) {
+            if (cached.needsBind) {
+                rebindHeader(parent, cached, position);
+            } else if (cached.measuredWidth != parent.getWidth()) {
+                remeasureView(parent, cached);
+            }
+
+            return cached;
+        } else {
+            HeaderCache.Entry entry = headerCache.acquire(0);
+
+            if (entry == null) {
+                entry = new HeaderCache.Entry(adapter.onCreateHeaderHolder(parent), 0);
+
+                if (metrics != null) {
+                    metrics.onHeaderCreated();
+                }
             }
-        }
 
-        return null;
+            //noinspection unchecked
+            adapter.onBindHeaderHolder(entry.holder, position);
+
+            if (metrics != null) {
+                metrics.onHeaderBound();
+            }
+
+            measureView(parent, entry);
+            return headerCache.put(key, entry);
+        }
     }
 
-    @NonNull
-    private RecyclerView.ViewHolder getHeader(@NonNull RecyclerView parent, int position) {
-        final long key = adapter.getHeaderId(position);
+    private void rebindHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+            int position) {
 
-        if (headerCache.containsKey(key)) {
-            return headerCache.get(key);
+        if (adapter instanceof DoubleHeaderPayloadBinder) {
+            //noinspection unchecked
+            ((DoubleHeaderPayloadBinder) adapter).onBindHeaderHolder(entry.holder, position,
+                    entry.getPayloads());
         } else {
-            final RecyclerView.ViewHolder holder = adapter.onCreateHeaderHolder(parent);
-            final View header = holder.itemView;
+            //noinspection unchecked
+            adapter.onBindHeaderHolder(entry.holder, position);
+        }
 
+        entry.onBound();
+
+        if (metrics != null) {
+            metrics.onHeaderBound();
+        }
+
+        remeasureView(parent, entry);
+    }
+
+    private void rebindSubHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+            int position) {
+
+        if (adapter instanceof DoubleHeaderPayloadBinder) {
+            //noinspection unchecked
+            ((DoubleHeaderPayloadBinder) adapter).onBindSubHeaderHolder(entry.holder, position,
+                    entry.getPayloads());
+        } else {
             //noinspection unchecked
-            adapter.onBindHeaderHolder(holder, position);
-            measureView(parent, header);
-            headerCache.put(key, holder);
+            adapter.onBindSubHeaderHolder(entry.holder, position);
+        }
+
+        entry.onBound();
+
+        if (metrics != null) {
+            metrics.onHeaderBound();
+        }
+
+        remeasureView(parent, entry);
+    }
+
+    /**
+     * Measures a cached header again, after it was rebound or the RecyclerView's width changed,
+     * keeping its bound holder.
+     */
+    private void remeasureView(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry) {
+        final int height = entry.holder.itemView.getHeight();
+
+        measureView(parent, entry);
+        entry.invalidateSnapshot();
 
-            return holder;
+        if (entry.holder.itemView.getHeight() != height) {
+            // the item offsets depend on the header heights, which may be
+            // measured in the middle of a layout or scroll
+            invalidator.invalidate(parent);
         }
     }
 
-    private void measureView(@NonNull RecyclerView parent, @NonNull View header) {
-        int widthSpec = View.MeasureSpec.makeMeasureSpec(parent.getWidth(), View.MeasureSpec.EXACTLY);
+    private void measureView(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry) {
+        final View header = entry.holder.itemView;
+        entry.measuredWidth = parent.getWidth();
+
+        if (metrics != null) {
+            metrics.onHeaderMeasured();
+        }
+
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(entry.measuredWidth, View.MeasureSpec.EXACTLY);
         int heightSpec = View.MeasureSpec.makeMeasureSpec(parent.getHeight(), View.MeasureSpec.UNSPECIFIED);
 
         int childWidth = ViewGroup.getChildMeasureSpec(widthSpec,
@@ -165,24 +673,70 @@ private void measureView(@NonNull RecyclerView parent, @NonNull View header) {
 
         header.measure(childWidth, childHeight);
         header.layout(0, 0, header.getMeasuredWidth(), header.getMeasuredHeight());
+        maxHeaderHeight = Math.max(maxHeaderHeight, header.getMeasuredHeight());
     }
 
     private boolean hasSubHeader(int position) {
         if (position == 0) {
-            return true;
+            return isLoaded(0);
+        }
+
+        if (isIndexed()) {
+            return subHeaderIndex.isSectionStart(position)
+                    && isLoaded(position) && isLoaded(position - 1);
         }
 
-        int previous = position - 1;
-        return adapter.getSubHeaderId(position) != adapter.getSubHeaderId(previous);
+        final long previousId = getSubHeaderId(position - 1);
+        final long id = getSubHeaderId(position);
+        return previousId != id && previousId != UNKNOWN_HEADER_ID && id != UNKNOWN_HEADER_ID;
+    }
+
+    private int findSectionStartInRow(@NonNull RecyclerView parent, int position) {
+        final int rowStart = GridRows.rowStart(parent, position);
+
+        for (int i = position; i >= rowStart; i--) {
+            if (hasSubHeader(i)) {
+                return i;
+            }
+        }
+
+        return RecyclerView.NO_POSITION;
     }
 
     private boolean hasHeader(int position) {
         if (position == 0) {
-            return true;
+            return isLoaded(0);
         }
 
-        int previous = position - 1;
-        return adapter.getHeaderId(position) != adapter.getHeaderId(previous);
+        if (isIndexed()) {
+            return headerIndex.isSectionStart(position)
+                    && isLoaded(position) && isLoaded(position - 1);
+        }
+
+        final long previousId = getHeaderId(position - 1);
+        final long id = getHeaderId(position);
+        return previousId != id && previousId != UNKNOWN_HEADER_ID && id != UNKNOWN_HEADER_ID;
+    }
+
+    /**
+     * @return a layer of a {@link CompositeDecoration} that draws this decoration with the
+     * composite's snapshot of the children, leaving the decoration itself unchanged
+     */
+    @NonNull
+    DecorationLayer asLayer() {
+        return new DecorationLayer() {
+            @Override
+            public void getItemOffsets(@NonNull Rect outRect, @NonNull View view, int position,
+                    @NonNull RecyclerView parent) {
+                DoubleHeaderDecoration.this.getItemOffsets(outRect, position, parent);
+            }
+
+            @Override
+            public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+                    @NonNull ChildSnapshot children) {
+                draw(canvas, parent, children);
+            }
+        };
     }
 
     /**
@@ -191,22 +745,42 @@ private boolean hasHeader(int position) {
     @Override
     public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
             @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        getItemOffsets(outRect, parent.getChildAdapterPosition(view), parent);
+    }
 
-        int position = parent.getChildAdapterPosition(view);
+    /**
+     * Sets the offsets of the item at the given adapter position, which a
+     * {@link CompositeDecoration} looks up once for all of its layers.
+     */
+    void getItemOffsets(@NonNull Rect outRect, int position, @NonNull RecyclerView parent) {
+        final long start = metrics != null ? System.nanoTime() : 0;
+        prepare(parent);
+
+        // offsets are only requested during layout, so the last frame's placements are stale
+        frame.invalidate();
 
         int headerHeight = 0;
 
-        if (position != RecyclerView.NO_POSITION && hasSubHeader(position)) {
-            if (hasHeader(position)) {
-                View header = getHeader(parent, position).itemView;
+        // in a grid, every item in the first row of a section makes room for the headers
+        final int sectionStart = position != RecyclerView.NO_POSITION
+                ? findSectionStartInRow(parent, position)
+                : RecyclerView.NO_POSITION;
+
+        if (sectionStart != RecyclerView.NO_POSITION) {
+            if (hasHeader(sectionStart)) {
+                View header = getHeader(parent, sectionStart).holder.itemView;
                 headerHeight += header.getHeight();
             }
 
-            View header = getSubHeader(parent, position).itemView;
+            View header = getSubHeader(parent, sectionStart).holder.itemView;
             headerHeight += getSubHeaderHeightForLayout(header);
         }
 
         outRect.set(0, headerHeight, 0, 0);
+
+        if (metrics != null) {
+            metrics.onItemOffsets(System.nanoTime() - start);
+        }
     }
 
     /**
@@ -215,136 +789,183 @@ public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
     @Override
     public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
             @NonNull RecyclerView.State state) {
+        draw(canvas, parent, null);
+    }
+
+    /**
+     * Draws the headers, reading the children from the given snapshot if it was already taken
+     * for this frame, or from a snapshot of the decoration's own otherwise.
+     */
+    private void draw(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @Nullable ChildSnapshot children) {
+
+        if (metrics == null) {
+            drawHeaders(canvas, parent, children);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        drawHeaders(canvas, parent, children);
+        metrics.onFrameDrawn(System.nanoTime() - start, frame.drawnCount());
+    }
+
+    private void drawHeaders(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @Nullable ChildSnapshot children) {
+        prepare(parent);
+
+        if (frame.isUnchanged(parent, canvas, cacheVersion(), children)) {
+            frame.draw(canvas, renderSnapshots);
+            return;
+        }
 
-        final int count = parent.getChildCount();
+        headerCache.beginFrame();
+        subHeaderCache.beginFrame();
+
+        if (!isIndexed()) {
+            headerIds.open(frame);
+        }
+
+        // one pass over the children recorded by the frame: the first drawn child pins the
+        // header and subheader, and the first later child of another section pushes them up
+        final int count = frame.childCount();
+        int pinnedHeader = -1;
+        int pinnedSubHeader = -1;
+        long pinnedHeaderId = 0;
+        long pinnedSubHeaderId = 0;
+        int pinnedHeaderHeight = 0;
+        int pinnedSubHeaderHeight = 0;
+        boolean headerPushed = false;
+        boolean subHeaderPushed = false;
 
-        boolean headerDrawn = false;
         for (int layoutPos = 0; layoutPos < count; layoutPos++) {
-            final View child = parent.getChildAt(layoutPos);
-            boolean visible = getAnimatedTop(child) > -child.getHeight();
-            final int adapterPos = parent.getChildAdapterPosition(child);
-
-            if (visible && adapterPos != RecyclerView.NO_POSITION
-                    && (!headerDrawn || hasSubHeader(adapterPos))) {
-                int left, top;
-                final View header = getHeader(parent, adapterPos).itemView;
-                final View subHeader = getSubHeader(parent, adapterPos).itemView;
-
-                canvas.save();
-                left = child.getLeft();
-                top = getSubHeaderTop(parent, child, header, subHeader, adapterPos, layoutPos);
-                canvas.translate(left, top);
-                subHeader.setTranslationX(left);
-                subHeader.setTranslationY(top);
-                subHeader.draw(canvas);
-                canvas.restore();
-
-                if (!headerDrawn || hasHeader(adapterPos)) {
-                    canvas.save();
-                    left = child.getLeft();
-                    top = getHeaderTop(parent, child, header, subHeader, adapterPos, layoutPos);
-                    canvas.translate(left, top);
-                    header.setTranslationX(left);
-                    header.setTranslationY(top);
-                    header.draw(canvas);
-                    canvas.restore();
-                }
+            final int adapterPos = frame.childPosition(layoutPos);
 
-                headerDrawn = true;
+            if (adapterPos == RecyclerView.NO_POSITION || !isLoaded(adapterPos)) {
+                continue;
             }
-        }
-    }
 
-    private int getSubHeaderTop(@NonNull RecyclerView parent, @NonNull View child,
-            @NonNull View header, @NonNull View subHeader, int adapterPos, int layoutPos) {
-
-        int top = getAnimatedTop(child) - getSubHeaderHeightForLayout(subHeader);
-        if (isFirstValidChild(layoutPos, parent)) {
-            final int count = parent.getChildCount();
-            final long currentHeaderId = adapter.getHeaderId(adapterPos);
-            final long currentSubHeaderId = adapter.getSubHeaderId(adapterPos);
-
-            // find next view with sub-header and compute the offscreen push if needed
-            for (int i = layoutPos + 1; i < count; i++) {
-                final View next = parent.getChildAt(i);
-                int adapterPosHere = parent.getChildAdapterPosition(next);
-                if (adapterPosHere != RecyclerView.NO_POSITION) {
-                    final long nextHeaderId = adapter.getHeaderId(adapterPosHere);
-                    final long nextSubHeaderId = adapter.getSubHeaderId(adapterPosHere);
-
-                    if ((nextSubHeaderId != currentSubHeaderId)) {
-                        int headersHeight = getSubHeaderHeightForLayout(subHeader) +
-                                getSubHeader(parent, adapterPosHere).itemView.getHeight();
-                        if (nextHeaderId != currentHeaderId) {
-                            headersHeight += getHeader(parent, adapterPosHere).itemView.getHeight();
-                        }
-
-                        final int offset = getAnimatedTop(next) - headersHeight;
-                        if (offset < header.getHeight()) {
-                            return offset;
-                        } else {
-                            break;
-                        }
+            final int top = frame.childTop(layoutPos);
+            final int left = frame.childLeft(layoutPos);
+
+            if (pinnedHeader != -1) {
+                final long headerId = getHeaderId(adapterPos);
+
+                if (!subHeaderPushed && getSubHeaderId(adapterPos) != pinnedSubHeaderId) {
+                    int headersHeight = pinnedSubHeaderHeight
+                            + getSubHeader(parent, adapterPos).holder.itemView.getHeight();
+                    if (headerId != pinnedHeaderId) {
+                        headersHeight += getHeader(parent, adapterPos).holder.itemView.getHeight();
                     }
+
+                    final int offset = top - headersHeight;
+                    if (offset < pinnedHeaderHeight) {
+                        frame.setTop(pinnedSubHeader, offset);
+                    }
+                    subHeaderPushed = true;
+                }
+
+                if (!headerPushed && headerId != pinnedHeaderId) {
+                    final int offset = top - pinnedHeaderHeight
+                            - getHeader(parent, adapterPos).holder.itemView.getHeight()
+                            - pinnedSubHeaderHeight;
+                    if (offset < 0) {
+                        frame.setTop(pinnedHeader, offset);
+                    }
+                    headerPushed = true;
                 }
             }
-        }
 
-        return Math.max(header.getHeight(), top);
-    }
+            final View child = frame.child(layoutPos);
+            final boolean visible = top > -child.getHeight();
+
+            if (!visible || (pinnedHeader != -1 && !hasSubHeader(adapterPos))) {
+                continue;
+            }
 
-    private int getHeaderTop(@NonNull RecyclerView parent, @NonNull View child,
-            @NonNull View header, @NonNull View subHeader, int adapterPos, int layoutPos) {
+            final boolean clipped = pinnedHeader != -1 && areHeadersClipped(top);
+            final HeaderCache.Entry headerEntry = clipped
+                    ? headerCache.get(getHeaderId(adapterPos))
+                    : getHeader(parent, adapterPos);
+            final HeaderCache.Entry subHeaderEntry = clipped
+                    ? subHeaderCache.get(getSubHeaderId(adapterPos))
+                    : getSubHeader(parent, adapterPos);
+
+            if (headerEntry == null || subHeaderEntry == null) {
+                // outside the clip and not cached, so there is nothing to hit test either
+                continue;
+            }
 
-        int top = getAnimatedTop(child) - header.getHeight() - getSubHeaderHeightForLayout(subHeader);
-        if (isFirstValidChild(layoutPos, parent)) {
-            final int count = parent.getChildCount();
-            final long currentId = adapter.getHeaderId(adapterPos);
+            final int headerHeight = headerEntry.holder.itemView.getHeight();
+            final int subHeaderHeight = getSubHeaderHeightForLayout(subHeaderEntry.holder.itemView);
+            final int subHeaderTop = Math.max(headerHeight, top - subHeaderHeight);
+            final int headerTop = top - headerHeight - subHeaderHeight;
+
+            if (pinnedHeader == -1) {
+                pinnedSubHeader = frame.add(subHeaderEntry, LAYER_SUB_HEADER, left, subHeaderTop);
+                pinnedHeader = frame.add(headerEntry, LAYER_HEADER, left, Math.max(0, headerTop));
+                pinnedHeaderId = getHeaderId(adapterPos);
+                pinnedSubHeaderId = getSubHeaderId(adapterPos);
+                pinnedHeaderHeight = headerHeight;
+                pinnedSubHeaderHeight = subHeaderHeight;
+                continue;
+            }
 
-            // find next view with header and compute the offscreen push if needed
-            for (int i = layoutPos + 1; i < count; i++) {
-                View next = parent.getChildAt(i);
-                int adapterPosHere = parent.getChildAdapterPosition(next);
-                if (adapterPosHere != RecyclerView.NO_POSITION) {
-                    long nextId = adapter.getHeaderId(adapterPosHere);
-                    if (nextId != currentId) {
-                        final int headersHeight = header.getHeight() +
-                                getHeader(parent, adapterPosHere).itemView.getHeight();
-                        final int offset = getAnimatedTop(next) - headersHeight -
-                                getSubHeaderHeightForLayout(subHeader);
+            frame.add(subHeaderEntry, LAYER_SUB_HEADER, left, subHeaderTop);
 
-                        if (offset < 0) {
-                            return offset;
-                        } else {
-                            break;
-                        }
-                    }
-                }
+            if (hasHeader(adapterPos)) {
+                frame.add(headerEntry, LAYER_HEADER, left, headerTop);
             }
+        }
 
-            top = Math.max(0, top);
+        headerIds.close();
+        frame.commit(cacheVersion());
+        frame.draw(canvas, renderSnapshots);
+
+        if (headerPrefetcher != null) {
+            headerPrefetcher.prefetch(parent);
+            subHeaderPrefetcher.prefetch(parent);
         }
+    }
 
-        return top;
+    /**
+     * Stops observing the RecyclerView adapter. Call this after removing the decoration from its
+     * RecyclerView, which the decoration isn't told about; it is done automatically when the
+     * RecyclerView is detached from its window. The decoration observes the adapter again the next
+     * time it is used.
+     */
+    public void detach() {
+        observers.detach();
     }
 
-    private boolean isFirstValidChild(int layoutPos, @NonNull RecyclerView parent) {
-        boolean isFirstValidChild = true;
-        for (int otherLayoutPos = layoutPos - 1; otherLayoutPos >= 0; --otherLayoutPos) {
-            final View otherChild = parent.getChildAt(otherLayoutPos);
-            if (parent.getChildAdapterPosition(otherChild) != RecyclerView.NO_POSITION) {
-                boolean visible = getAnimatedTop(otherChild) > -otherChild.getHeight();
-                if (visible) {
-                    isFirstValidChild = false;
-                    break;
-                }
-            }
+    private void prepare(@NonNull RecyclerView parent) {
+        recyclerView = parent;
+        observers.watch(parent);
+        final int visibleCount = parent.getChildCount();
+        headerCache.ensureAutoSize(visibleCount);
+        subHeaderCache.ensureAutoSize(visibleCount);
+        attachSectionIndexes(parent);
+
+        if (headerUpdateTracker != null) {
+            headerUpdateTracker.attach(parent.getAdapter());
+            subHeaderUpdateTracker.attach(parent.getAdapter());
+            headerUpdateTracker.apply();
+            subHeaderUpdateTracker.apply();
         }
-        return isFirstValidChild;
     }
 
-    private int getAnimatedTop(@NonNull View child) {
-        return child.getTop() + (int) child.getTranslationY();
+    private int cacheVersion() {
+        // both versions only ever increase, so their sum changes whenever either cache does
+        return headerCache.version() + subHeaderCache.version();
+    }
+
+    /**
+     * Returns whether the header and subheader above a child at the given top would be outside
+     * the clip, even if both were as tall as the tallest one measured so far. Headers outside the
+     * clip are only placed if already cached, without being rebound or measured, so they can
+     * still be hit tested, and are skipped when the frame is drawn.
+     */
+    private boolean areHeadersClipped(int childTop) {
+        return frame.isClipped(childTop - 2 * maxHeaderHeight, childTop + maxHeaderHeight);
     }
 
     private int getSubHeaderHeightForLayout(@NonNull View header) {
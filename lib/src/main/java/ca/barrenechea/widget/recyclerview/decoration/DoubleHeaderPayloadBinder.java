@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * An optional extension for a {@link DoubleHeaderAdapter} that applies partial updates to headers
+ * and sub-headers. Without it, a header or sub-header notified as changed is always fully
+ * rebound.
+ *
+ * @param <H> the header view holder
+ * @param <S> the sub-header view holder
+ */
+public interface DoubleHeaderPayloadBinder<H extends RecyclerView.ViewHolder,
+        S extends RecyclerView.ViewHolder> {
+    /**
+     * Updates the header view after it was notified as changed through
+     * {@link DoubleHeaderDecoration#notifyHeaderChanged(long, Object)}. The payloads hold every
+     * partial update notified since the header was last bound; when they're empty the header must
+     * be fully rebound.
+     *
+     * @param viewHolder the header view holder
+     * @param position the header's item position
+     * @param payloads the partial updates to apply, or an empty list for a full rebind
+     */
+    void onBindHeaderHolder(@NonNull H viewHolder, int position, @NonNull List<Object> payloads);
+
+    /**
+     * Updates the sub-header view after it was notified as changed through
+     * {@link DoubleHeaderDecoration#notifySubHeaderChanged(long, Object)}. The payloads hold every
+     * partial update notified since the sub-header was last bound; when they're empty the
+     * sub-header must be fully rebound.
+     *
+     * @param viewHolder the sub-header view holder
+     * @param position the sub-header's item position
+     * @param payloads the partial updates to apply, or an empty list for a full rebind
+     */
+    void onBindSubHeaderHolder(@NonNull S viewHolder, int position,
+            @NonNull List<Object> payloads);
+}
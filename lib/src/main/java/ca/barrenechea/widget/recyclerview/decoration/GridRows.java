@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Grid helpers for the header decorations, which offset every item in the first row of a section
+ * so the cells of that row stay aligned under the header.
+ */
+final class GridRows {
+
+    private GridRows() {
+    }
+
+    /**
+     * Finds the start of the row a position is in. Custom span size lookups other than
+     * {@link SectionSpanSizeLookup} are used as configured: their span index is looked up once,
+     * and the items before the position are walked back until their span sizes add up to it.
+     *
+     * @return the first position of the row containing the given position, or the position
+     * itself when the RecyclerView isn't laid out as a grid
+     */
+    static int rowStart(@NonNull RecyclerView parent, int position) {
+        final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+
+        if (!(layoutManager instanceof GridLayoutManager)) {
+            return position;
+        }
+
+        final GridLayoutManager grid = (GridLayoutManager) layoutManager;
+        final GridLayoutManager.SpanSizeLookup lookup = grid.getSpanSizeLookup();
+        final int spanCount = grid.getSpanCount();
+
+        if (lookup instanceof SectionSpanSizeLookup
+                || lookup instanceof GridLayoutManager.DefaultSpanSizeLookup) {
+            // every item but the last of a row takes a single span
+            return position - lookup.getSpanIndex(position, spanCount);
+        }
+
+        // the items of a row before the position fill exactly the spans before its own
+        int spansBefore = lookup.getSpanIndex(position, spanCount);
+        int start = position;
+
+        while (spansBefore > 0 && start > 0) {
+            start--;
+            spansBefore -= lookup.getSpanSize(start);
+        }
+
+        return start;
+    }
+}
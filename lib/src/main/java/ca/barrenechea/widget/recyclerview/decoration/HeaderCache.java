@@ -0,0 +1,478 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Canvas;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A bounded cache of header view holders keyed by header id. When the cache is full, the least
+ * recently drawn header is evicted.
+ * <p>
+ * Unless an explicit size is set, the cache sizes itself to roughly two screens worth of headers,
+ * based on the number of children the RecyclerView has laid out.
+ * <p>
+ * Header ids are stored as primitive longs, so looking up a header never boxes its id and takes a
+ * single hash probe.
+ * <p>
+ * Evicted headers are kept in a small pool per header view type, so a header for a new id can
+ * rebind a holder that went off-screen instead of creating a new one. Headers used in the frame
+ * being drawn are never pooled, as they may still be placed in it.
+ */
+public final class HeaderCache {
+    /**
+     * Size value used to let the cache size itself from the number of visible children.
+     */
+    public static final int AUTO_SIZE = -1;
+
+    private static final int MIN_AUTO_SIZE = 8;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_POOLED_PER_TYPE = 5;
+
+    private Entry[] table;
+    private int size;
+
+    // least recently used entry is the head, most recently used is the tail
+    private Entry head;
+    private Entry tail;
+
+    // evicted entries by view type, chained through Entry#next
+    private final SparseArray<Entry> pool = new SparseArray<>();
+    private final SparseIntArray poolCounts = new SparseIntArray();
+
+    private boolean autoSize;
+    private int maxSize;
+
+    // incremented whenever entries are added or removed
+    private int version;
+
+    // incremented at the start of every frame, entries used since then aren't pooled
+    private int frame;
+
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    HeaderCache() {
+        this.table = new Entry[INITIAL_CAPACITY];
+        setMaxSize(AUTO_SIZE);
+    }
+
+    /**
+     * Returns the cached entry for the header id and marks it as the most recently used one.
+     */
+    @Nullable
+    Entry get(long id) {
+        final Entry entry = find(id);
+
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        entry.frame = frame;
+        moveToTail(entry);
+        return entry;
+    }
+
+    /**
+     * Returns whether the header id is cached, without counting a hit or miss or changing its
+     * position in the eviction order.
+     */
+    boolean contains(long id) {
+        return find(id) != null;
+    }
+
+    /**
+     * Caches the entry under the header id, replacing any entry already cached for it. The entry
+     * must not be in the cache already, such as one returned by {@link #acquire(int)}.
+     */
+    @NonNull
+    Entry put(long id, @NonNull Entry entry) {
+        final Entry existing = find(id);
+
+        if (existing != null) {
+            remove(existing);
+            recycle(existing);
+        }
+
+        if (size + 1 > table.length - (table.length >> 2)) {
+            resize(table.length << 1);
+        }
+
+        version++;
+
+        final int index = indexFor(id, table.length);
+        entry.id = id;
+        entry.frame = frame;
+        entry.onBound();
+        entry.next = table[index];
+        table[index] = entry;
+        size++;
+        linkLast(entry);
+
+        trimToSize(maxSize);
+        return entry;
+    }
+
+    /**
+     * Takes an evicted entry of the given view type out of the pool, so its holder can be rebound
+     * for a new header id instead of creating a new one.
+     *
+     * @return a pooled entry, or null if there's none for the view type
+     */
+    @Nullable
+    Entry acquire(int viewType) {
+        final Entry entry = pool.get(viewType);
+
+        if (entry != null) {
+            pool.put(viewType, entry.next);
+            poolCounts.put(viewType, poolCounts.get(viewType) - 1);
+            entry.next = null;
+        }
+
+        return entry;
+    }
+
+    void clear() {
+        version++;
+
+        while (head != null) {
+            final Entry entry = head;
+            remove(entry);
+            recycle(entry);
+        }
+    }
+
+    /**
+     * Marks the cached header as needing to be rebound the next time it is used, without
+     * counting a hit or miss.
+     *
+     * @param payload the partial update to bind, or null for a full rebind
+     * @return whether the header id was cached
+     */
+    boolean markChanged(long id, @Nullable Object payload) {
+        final Entry entry = find(id);
+
+        if (entry == null) {
+            return false;
+        }
+
+        entry.markChanged(payload);
+        version++;
+        return true;
+    }
+
+    /**
+     * Marks every cached header as needing a full rebind the next time it is used, keeping their
+     * holders.
+     */
+    void markAllChanged() {
+        for (Entry entry = head; entry != null; entry = entry.after) {
+            entry.markChanged(null);
+        }
+
+        version++;
+    }
+
+    /**
+     * Starts a new frame. An entry looked up or added after this call may be placed in the frame
+     * being drawn, so if it is evicted before the next call it is dropped instead of pooled, where
+     * another header id could take it and rebind its holder while it is still placed.
+     */
+    void beginFrame() {
+        frame++;
+    }
+
+    /**
+     * @return a counter that changes whenever entries are added to or removed from the cache
+     */
+    int version() {
+        return version;
+    }
+
+    /**
+     * Grows an automatically sized cache so it holds at least two screens worth of headers.
+     *
+     * @param visibleCount the number of children currently laid out
+     */
+    void ensureAutoSize(int visibleCount) {
+        if (autoSize && visibleCount * 2 > maxSize) {
+            maxSize = visibleCount * 2;
+        }
+    }
+
+    void setMaxSize(int size) {
+        if (size != AUTO_SIZE && size <= 0) {
+            throw new IllegalArgumentException("size <= 0");
+        }
+
+        autoSize = size == AUTO_SIZE;
+        maxSize = autoSize ? MIN_AUTO_SIZE : size;
+        trimToSize(maxSize);
+    }
+
+    @Nullable
+    private Entry find(long id) {
+        Entry entry = table[indexFor(id, table.length)];
+
+        while (entry != null && entry.id != id) {
+            entry = entry.next;
+        }
+
+        return entry;
+    }
+
+    private void trimToSize(int max) {
+        while (size > max && head != null) {
+            final Entry entry = head;
+            remove(entry);
+            recycle(entry);
+            evictionCount++;
+            version++;
+        }
+    }
+
+    private void recycle(@NonNull Entry entry) {
+        final int count = poolCounts.get(entry.viewType);
+
+        if (count < MAX_POOLED_PER_TYPE && entry.frame != frame) {
+            entry.next = pool.get(entry.viewType);
+            pool.put(entry.viewType, entry);
+            poolCounts.put(entry.viewType, count + 1);
+        }
+    }
+
+    private void remove(@NonNull Entry entry) {
+        final int index = indexFor(entry.id, table.length);
+        Entry previous = null;
+        Entry current = table[index];
+
+        while (current != entry) {
+            previous = current;
+            current = current.next;
+        }
+
+        if (previous == null) {
+            table[index] = entry.next;
+        } else {
+            previous.next = entry.next;
+        }
+
+        entry.next = null;
+        unlink(entry);
+        size--;
+    }
+
+    private void resize(int capacity) {
+        final Entry[] resized = new Entry[capacity];
+
+        for (Entry entry = head; entry != null; entry = entry.after) {
+            final int index = indexFor(entry.id, capacity);
+            entry.next = resized[index];
+            resized[index] = entry;
+        }
+
+        table = resized;
+    }
+
+    private void moveToTail(@NonNull Entry entry) {
+        if (entry != tail) {
+            unlink(entry);
+            linkLast(entry);
+        }
+    }
+
+    private void linkLast(@NonNull Entry entry) {
+        entry.before = tail;
+        entry.after = null;
+
+        if (tail == null) {
+            head = entry;
+        } else {
+            tail.after = entry;
+        }
+
+        tail = entry;
+    }
+
+    private void unlink(@NonNull Entry entry) {
+        if (entry.before == null) {
+            head = entry.after;
+        } else {
+            entry.before.after = entry.after;
+        }
+
+        if (entry.after == null) {
+            tail = entry.before;
+        } else {
+            entry.after.before = entry.before;
+        }
+
+        entry.before = null;
+        entry.after = null;
+    }
+
+    private static int indexFor(long id, int capacity) {
+        final long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    /**
+     * @return the number of headers currently cached
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum number of headers kept before the least recently drawn is evicted
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of times a header was found in the cache
+     */
+    public int hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of times a header had to be created because it wasn't cached
+     */
+    public int missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of headers that have been evicted
+     */
+    public int evictionCount() {
+        return evictionCount;
+    }
+
+    static final class Entry {
+        long id;
+        final RecyclerView.ViewHolder holder;
+        final int viewType;
+
+        // next entry in the same hash bucket, or in the pool once evicted
+        Entry next;
+
+        // neighbours in least recently used order
+        Entry before;
+        Entry after;
+
+        // recording of the header view, only used when snapshot rendering is enabled
+        HeaderSnapshot snapshot;
+
+        // the RecyclerView width the header was last measured for
+        int measuredWidth = -1;
+
+        // the frame the entry was last used in
+        int frame = -1;
+
+        // set when the header was notified as changed, along with any partial update payloads
+        boolean needsBind;
+        private boolean fullBind;
+        private ArrayList<Object> payloads;
+
+        Entry(@NonNull RecyclerView.ViewHolder holder, int viewType) {
+            this.holder = holder;
+            this.viewType = viewType;
+        }
+
+        /**
+         * Draws the header view, either directly or by replaying its snapshot.
+         */
+        void draw(@NonNull Canvas canvas, boolean useSnapshot) {
+            if (useSnapshot) {
+                if (snapshot == null) {
+                    snapshot = HeaderSnapshot.create();
+                }
+
+                snapshot.draw(canvas, holder.itemView);
+            } else {
+                holder.itemView.draw(canvas);
+            }
+        }
+
+        void markChanged(@Nullable Object payload) {
+            if (!needsBind) {
+                needsBind = true;
+                fullBind = false;
+            }
+
+            if (payload == null) {
+                fullBind = true;
+            } else if (!fullBind) {
+                if (payloads == null) {
+                    payloads = new ArrayList<>();
+                }
+
+                payloads.add(payload);
+            }
+
+            if (fullBind && payloads != null) {
+                payloads.clear();
+            }
+        }
+
+        /**
+         * @return the payloads to rebind the header with, empty for a full rebind
+         */
+        @NonNull
+        List<Object> getPayloads() {
+            return fullBind || payloads == null ? Collections.<Object>emptyList() : payloads;
+        }
+
+        /**
+         * Clears any pending rebind and the recorded snapshot after the header has been bound.
+         */
+        void onBound() {
+            needsBind = false;
+            fullBind = false;
+
+            if (payloads != null) {
+                payloads.clear();
+            }
+
+            invalidateSnapshot();
+        }
+
+        /**
+         * Drops the recorded snapshot after the header has been rebound or measured again.
+         */
+        void invalidateSnapshot() {
+            if (snapshot != null) {
+                snapshot.invalidate();
+            }
+        }
+    }
+}
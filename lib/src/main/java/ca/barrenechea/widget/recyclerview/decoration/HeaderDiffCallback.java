@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Decides which cached headers need rebinding after the adapter's items change, for example
+ * when a new list is submitted to a {@code ListAdapter} or a {@code DiffUtil.DiffResult} is
+ * dispatched to the adapter.
+ * <p>
+ * Only headers whose sections had items inserted, removed, changed or moved are asked about;
+ * every other cached header is kept as it is. By default, every asked header is fully rebound.
+ */
+public class HeaderDiffCallback {
+
+    /**
+     * Called for a cached header whose section's items changed.
+     *
+     * @param headerId the id of the header
+     * @return true if the header still shows the right content and can be kept as it is
+     */
+    public boolean areHeaderContentsTheSame(long headerId) {
+        return false;
+    }
+
+    /**
+     * Called for a cached header that is about to be rebound.
+     *
+     * @param headerId the id of the header
+     * @return the partial update to bind the header with, or null for a full rebind
+     */
+    @Nullable
+    public Object getHeaderChangePayload(long headerId) {
+        return null;
+    }
+
+    /**
+     * Called for a cached subheader of a {@link DoubleHeaderDecoration} whose section's items
+     * changed.
+     *
+     * @param subHeaderId the id of the subheader
+     * @return true if the subheader still shows the right content and can be kept as it is
+     */
+    public boolean areSubHeaderContentsTheSame(long subHeaderId) {
+        return false;
+    }
+
+    /**
+     * Called for a cached subheader of a {@link DoubleHeaderDecoration} that is about to be
+     * rebound.
+     *
+     * @param subHeaderId the id of the subheader
+     * @return the partial update to bind the subheader with, or null for a full rebind
+     */
+    @Nullable
+    public Object getSubHeaderChangePayload(long subHeaderId) {
+        return null;
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * The header placements computed for the last drawn frame, along with the state they were
+ * computed from: a {@link ChildSnapshot} of the adapter position and offset of every child, and
+ * the header cache version. The snapshot also serves the decorations' layout pass, which reads it
+ * instead of asking the RecyclerView for every child's position again. Inside a
+ * {@link CompositeDecoration} the snapshot is shared by all of its layers.
+ * <p>
+ * When a later frame finds that state unchanged, such as when only an item's ripple or progress
+ * indicator invalidated the RecyclerView, the placements are drawn again as they are. The
+ * placements also serve touch hit testing, which only needs to look at the drawn headers.
+ * <p>
+ * The frame also records the canvas clip, narrowed to the RecyclerView's padding when it clips
+ * to it. Headers that fall outside the clip are skipped when drawn, and the decorations use
+ * {@link #isClipped(int, int)} to skip creating, binding and measuring them in the draw pass.
+ * This doesn't save the work for the headers of section starts, which getItemOffsets already
+ * bound and measured to make room for them.
+ */
+final class HeaderFrame {
+    private boolean valid;
+    private int cacheVersion;
+
+    // the snapshot taken when no composite provides one, and the one the placements were
+    // computed from, whose generations are only comparable with its own
+    private final ChildSnapshot ownChildren = new ChildSnapshot();
+    private ChildSnapshot children = ownChildren;
+    private int generation;
+
+    private HeaderCache.Entry[] entries = new HeaderCache.Entry[8];
+    private int[] layers = new int[8];
+    private int[] lefts = new int[8];
+    private int[] tops = new int[8];
+    private int size;
+
+    // the number of placements the last draw call drew, after culling those outside the clip
+    private int drawn;
+
+    // the clip the placements were computed for, if the canvas reported one
+    private final Rect clip = new Rect();
+    private final Rect previousClip = new Rect();
+    private boolean hasClip;
+
+    /**
+     * Forces the placements to be computed again on the next frame, after a layout pass or a data
+     * change.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Compares the children of the RecyclerView, the canvas clip and the header cache version
+     * with the ones the placements were computed for. If anything changed, the new state is
+     * recorded and the placements are cleared, to be added again and committed with
+     * {@link #commit(int)}.
+     *
+     * @param shared a snapshot already taken for this frame, such as the one of a
+     * {@link CompositeDecoration}, or null to take one of the frame's own
+     * @return whether the placements can be drawn again as they are
+     */
+    boolean isUnchanged(@NonNull RecyclerView parent, @NonNull Canvas canvas, int cacheVersion,
+            @Nullable ChildSnapshot shared) {
+
+        final boolean hadClip = hasClip;
+        previousClip.set(clip);
+        readClip(parent, canvas);
+
+        if (shared == null) {
+            ownChildren.update(parent);
+        }
+
+        final ChildSnapshot current = shared != null ? shared : ownChildren;
+        final boolean unchanged = valid && current == children
+                && current.generation() == generation
+                && cacheVersion == this.cacheVersion
+                && hadClip == hasClip && previousClip.equals(clip);
+
+        children = current;
+
+        if (!unchanged) {
+            valid = false;
+            generation = children.generation();
+            clearPlacements();
+        }
+
+        return unchanged;
+    }
+
+    /**
+     * Returns whether a header spanning the given vertical range would be entirely outside the
+     * clip of the current frame. Always false when the canvas reported no clip.
+     */
+    boolean isClipped(int top, int bottom) {
+        return hasClip && (bottom <= clip.top || top >= clip.bottom);
+    }
+
+    /**
+     * @return the number of children recorded by the last {@link #isUnchanged} call
+     */
+    int childCount() {
+        return children.count();
+    }
+
+    /**
+     * @return the given child
+     */
+    @NonNull
+    View child(int index) {
+        return children.child(index);
+    }
+
+    /**
+     * @return the adapter position of the given child, or {@link RecyclerView#NO_POSITION}
+     */
+    int childPosition(int index) {
+        return children.position(index);
+    }
+
+    /**
+     * @return the left edge of the given child
+     */
+    int childLeft(int index) {
+        return children.left(index);
+    }
+
+    /**
+     * @return the top edge of the given child, including its translation
+     */
+    int childTop(int index) {
+        return children.top(index);
+    }
+
+    /**
+     * Marks the placements added since the last {@link #isUnchanged} call as complete.
+     *
+     * @param cacheVersion the header cache version after the placements were computed
+     */
+    void commit(int cacheVersion) {
+        this.cacheVersion = cacheVersion;
+        this.valid = true;
+    }
+
+    /**
+     * Places a header for the current frame.
+     *
+     * @param layer identifies which kind of header this is, for hit testing
+     * @return the index of the placement, for {@link #setTop(int, int)}
+     */
+    int add(@NonNull HeaderCache.Entry entry, int layer, int left, int top) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+            layers = Arrays.copyOf(layers, size * 2);
+            lefts = Arrays.copyOf(lefts, size * 2);
+            tops = Arrays.copyOf(tops, size * 2);
+        }
+
+        entries[size] = entry;
+        layers[size] = layer;
+        lefts[size] = left;
+        tops[size] = top;
+        return size++;
+    }
+
+    /**
+     * Moves a placement of the current frame vertically, once a later child decides where it goes.
+     */
+    void setTop(int index, int top) {
+        tops[index] = top;
+    }
+
+    /**
+     * @return the number of headers placed in the current frame
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of headers the last {@link #draw} call drew, leaving out the ones that
+     * fell outside the clip
+     */
+    int drawnCount() {
+        return drawn;
+    }
+
+    /**
+     * Draws every placed header inside the clip, in the order they were added.
+     */
+    void draw(@NonNull Canvas canvas, boolean useSnapshots) {
+        drawn = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (hasClip) {
+                final View header = entries[i].holder.itemView;
+
+                if (tops[i] >= clip.bottom || tops[i] + header.getHeight() <= clip.top
+                        || lefts[i] >= clip.right || lefts[i] + header.getWidth() <= clip.left) {
+                    continue;
+                }
+            }
+
+            canvas.save();
+            canvas.translate(lefts[i], tops[i]);
+            entries[i].draw(canvas, useSnapshots);
+            canvas.restore();
+            drawn++;
+        }
+    }
+
+    /**
+     * Finds the topmost header of the given layer drawn under the point in the last frame.
+     *
+     * @return the header view, or null if no header of that layer was drawn there
+     */
+    @Nullable
+    View findHeaderUnder(int layer, float x, float y) {
+        // headers drawn later are on top, so look at them first
+        for (int i = size - 1; i >= 0; i--) {
+            if (layers[i] != layer) {
+                continue;
+            }
+
+            final View header = entries[i].holder.itemView;
+
+            if (x >= lefts[i] &&
+                    x <= lefts[i] + header.getWidth() &&
+                    y >= tops[i] &&
+                    y <= tops[i] + header.getHeight()) {
+                return header;
+            }
+        }
+
+        return null;
+    }
+
+    private void readClip(@NonNull RecyclerView parent, @NonNull Canvas canvas) {
+        // a canvas without a clip, such as one without a backing bitmap, culls nothing
+        hasClip = canvas.getClipBounds(clip);
+
+        if (hasClip && parent.getClipToPadding()
+                && !clip.intersect(parent.getPaddingLeft(), parent.getPaddingTop(),
+                        parent.getWidth() - parent.getPaddingRight(),
+                        parent.getHeight() - parent.getPaddingBottom())) {
+            clip.setEmpty();
+        }
+    }
+
+    private void clearPlacements() {
+        for (int i = 0; i < size; i++) {
+            entries[i] = null;
+        }
+
+        size = 0;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An optional extension for a {@link StickyHeaderAdapter} or {@link DoubleHeaderAdapter} that
+ * looks up the header ids of a range of positions in one call. The decorations fetch the ids of
+ * the positions in view this way once per frame, instead of calling {@code getHeaderId(int)} for
+ * every position they check.
+ */
+public interface HeaderIdRangeProvider {
+    /**
+     * Writes the header ids of a range of positions into {@code out}, starting at index 0. The
+     * ids must match the ones returned by {@code getHeaderId(int)}.
+     *
+     * @param start the first item position
+     * @param count the number of positions
+     * @param out the array to write the ids to, at least {@code count} long
+     */
+    void getHeaderIds(int start, int count, @NonNull long[] out);
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * The header ids of the positions covered by the RecyclerView's children, fetched from the
+ * adapter in a single bulk call per header level at the start of a frame and read from reused
+ * arrays for the rest of it.
+ */
+abstract class HeaderIdWindow {
+    // past this many positions per child, the children are too far apart to fetch in one range
+    private static final int MAX_POSITIONS_PER_CHILD = 4;
+
+    private final long[][] ids;
+    private int start;
+    private int count;
+
+    /**
+     * @param levels the number of header levels, such as 2 for headers and subheaders
+     */
+    HeaderIdWindow(int levels) {
+        ids = new long[levels][32];
+    }
+
+    /**
+     * Fetches the header ids of the given level for {@code count} positions from {@code start}
+     * into {@code out}.
+     */
+    abstract void load(int level, int start, int count, @NonNull long[] out);
+
+    /**
+     * Fetches the header ids of the positions from the first child recorded in the frame to the
+     * last, and of the position before the first, so section starts can be found without further
+     * lookups.
+     */
+    void open(@NonNull HeaderFrame frame) {
+        final int childCount = frame.childCount();
+        int first = Integer.MAX_VALUE;
+        int last = RecyclerView.NO_POSITION;
+
+        for (int i = 0; i < childCount; i++) {
+            final int position = frame.childPosition(i);
+
+            if (position != RecyclerView.NO_POSITION) {
+                first = Math.min(first, position);
+                last = Math.max(last, position);
+            }
+        }
+
+        count = 0;
+
+        if (last == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        first = Math.max(0, first - 1);
+        final int size = last - first + 1;
+
+        if (size > MAX_POSITIONS_PER_CHILD * (childCount + 1)) {
+            return;
+        }
+
+        for (int level = 0; level < ids.length; level++) {
+            if (size > ids[level].length) {
+                ids[level] = new long[Math.max(size, ids[level].length * 2)];
+            }
+
+            load(level, first, size, ids[level]);
+        }
+
+        start = first;
+        count = size;
+    }
+
+    /**
+     * Forgets the fetched ids, at the end of the frame.
+     */
+    void close() {
+        count = 0;
+    }
+
+    /**
+     * @return whether the id of the given position was fetched
+     */
+    boolean contains(int position) {
+        return position >= start && position - start < count;
+    }
+
+    /**
+     * @return the fetched id of the given level and position
+     */
+    long get(int level, int position) {
+        return ids[level][position - start];
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates the headers of the sections just outside the visible range on a worker executor, then
+ * binds them on the main thread and hands them to a header cache. Only view creation runs on the
+ * worker, so binding never reads the adapter's data off the main thread.
+ * <p>
+ * Headers that are needed before their background work completes are still created
+ * synchronously by the decoration; the late background result is then dropped.
+ */
+abstract class HeaderPrefetcher {
+    private static final int MAX_PREFETCH = 2;
+
+    private final HeaderCache cache;
+    private final Executor executor;
+    private final Handler mainHandler;
+
+    private long[] pendingIds = new long[8];
+    private int pendingCount;
+
+    // bumped whenever the cache is cleared, so results started before are dropped
+    private int generation;
+
+    private int prefetchedFirst = RecyclerView.NO_POSITION;
+    private int prefetchedLast = RecyclerView.NO_POSITION;
+
+    // the furthest positions already scanned after and before the visible range, so a scroll
+    // only looks up the header ids of the positions it newly brought within reach
+    private int scannedAfter = RecyclerView.NO_POSITION;
+    private int scannedBefore = RecyclerView.NO_POSITION;
+
+    HeaderPrefetcher(@NonNull HeaderCache cache, @NonNull Executor executor) {
+        this.cache = cache;
+        this.executor = executor;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Returns the header id for the given position. Called on the main thread.
+     */
+    abstract long getHeaderId(int position);
+
+    /**
+     * Returns whether a header should be drawn for the given header id.
+     */
+    boolean hasHeader(long id) {
+        return true;
+    }
+
+    /**
+     * Returns the header view type for the given position. Called on the main thread.
+     */
+    int getHeaderViewType(int position) {
+        return 0;
+    }
+
+    /**
+     * Creates an unbound header of the given view type. Called on the worker executor.
+     */
+    @NonNull
+    abstract RecyclerView.ViewHolder createHeader(@NonNull ViewGroup parent, int viewType);
+
+    /**
+     * Binds, measures and lays out a header created in the background. Called on the main thread.
+     */
+    abstract void bindHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+            int position);
+
+    /**
+     * Schedules background creation of the next few headers within a screen's worth of positions
+     * above and below the children currently laid out.
+     */
+    void prefetch(@NonNull RecyclerView parent) {
+        final int count = parent.getChildCount();
+        if (count == 0) {
+            return;
+        }
+
+        final int firstChild = parent.getChildAdapterPosition(parent.getChildAt(0));
+        final int lastChild = parent.getChildAdapterPosition(parent.getChildAt(count - 1));
+
+        if (firstChild != RecyclerView.NO_POSITION && lastChild != RecyclerView.NO_POSITION) {
+            prefetch(parent, Math.min(firstChild, lastChild), Math.max(firstChild, lastChild));
+        }
+    }
+
+    private void prefetch(@NonNull RecyclerView parent, int first, int last) {
+        if (first == prefetchedFirst && last == prefetchedLast) {
+            return;
+        }
+
+        final int previousFirst = prefetchedFirst;
+        final int previousLast = prefetchedLast;
+        prefetchedFirst = first;
+        prefetchedLast = last;
+
+        final RecyclerView.Adapter adapter = parent.getAdapter();
+        if (adapter == null) {
+            return;
+        }
+
+        final int distance = last - first + 1;
+        final int end = Math.min(adapter.getItemCount() - 1, last + distance);
+        final int start = Math.max(0, first - distance);
+
+        // the positions from the previous visible range up to where its scans stopped have been
+        // looked up already; if the new range still touches them, only the positions past them
+        // are scanned, otherwise the scans start over next to the new range
+        final int after = previousFirst != RecyclerView.NO_POSITION
+                && previousFirst <= last + 1 && scannedAfter >= last
+                ? scannedAfter + 1 : last + 1;
+        final int before = previousLast != RecyclerView.NO_POSITION
+                && previousLast >= first - 1 && scannedBefore <= first
+                ? scannedBefore - 1 : first - 1;
+
+        scannedAfter = prefetchRange(parent, after, end, 1);
+        scannedBefore = prefetchRange(parent, before, start, -1);
+    }
+
+    /**
+     * Drops all scheduled work; results that are still running are discarded on arrival.
+     */
+    void cancel() {
+        generation++;
+        pendingCount = 0;
+        prefetchedFirst = RecyclerView.NO_POSITION;
+        prefetchedLast = RecyclerView.NO_POSITION;
+        scannedAfter = RecyclerView.NO_POSITION;
+        scannedBefore = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Walks from the start to the end position, both inclusive, and schedules the headers whose id
+     * differs from the one before them, starting with the id of the position next to the start.
+     *
+     * @return the last position scanned, which is short of the end once enough headers have been
+     * scheduled
+     */
+    private int prefetchRange(@NonNull RecyclerView parent, int start, int end, int step) {
+        if (step > 0 ? start > end : start < end) {
+            return start - step;
+        }
+
+        long previousId = getHeaderId(start - step);
+        int scheduled = 0;
+        int position = start;
+
+        for (; position != end + step && scheduled < MAX_PREFETCH; position += step) {
+            final long id = getHeaderId(position);
+
+            if (id != previousId && hasHeader(id) && !cache.contains(id) && !isPending(id)) {
+                schedule(parent, id, position);
+                scheduled++;
+            }
+
+            previousId = id;
+        }
+
+        return position - step;
+    }
+
+    private void schedule(@NonNull final RecyclerView parent, final long id, final int position) {
+        addPending(id);
+
+        final int scheduledGeneration = generation;
+        final int viewType = getHeaderViewType(position);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final RecyclerView.ViewHolder holder = createHeader(parent, viewType);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(parent, id, position, holder, viewType, scheduledGeneration);
+                    }
+                });
+            }
+        });
+    }
+
+    private void deliver(@NonNull RecyclerView parent, long id, int position,
+            @NonNull RecyclerView.ViewHolder holder, int viewType, int scheduledGeneration) {
+
+        if (scheduledGeneration != generation) {
+            return;
+        }
+
+        removePending(id);
+
+        final RecyclerView.Adapter adapter = parent.getAdapter();
+        if (adapter == null || position >= adapter.getItemCount()) {
+            return;
+        }
+
+        // drop the result if the header was created synchronously in the meantime, or if the
+        // data moved under the position while it was being created
+        if (cache.contains(id) || getHeaderId(position) != id) {
+            return;
+        }
+
+        final HeaderCache.Entry entry = new HeaderCache.Entry(holder, viewType);
+        bindHeader(parent, entry, position);
+        cache.put(id, entry);
+    }
+
+    private boolean isPending(long id) {
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingIds[i] == id) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void addPending(long id) {
+        if (pendingCount == pendingIds.length) {
+            pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+        }
+
+        pendingIds[pendingCount++] = id;
+    }
+
+    private void removePending(long id) {
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingIds[i] == id) {
+                pendingIds[i] = pendingIds[--pendingCount];
+                return;
+            }
+        }
+    }
+}
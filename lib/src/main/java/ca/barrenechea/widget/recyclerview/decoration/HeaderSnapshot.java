@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+/**
+ * A recording of a bound and measured header view that can be replayed with a single draw call.
+ * <p>
+ * Uses a {@link RenderNode} on API 29 and above, a {@link Picture} on API 23 and above, where
+ * hardware canvases can replay pictures, and a {@link Bitmap} below that.
+ */
+abstract class HeaderSnapshot {
+    private boolean recorded;
+
+    @NonNull
+    static HeaderSnapshot create() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return new RenderNodeSnapshot();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return new PictureSnapshot();
+        } else {
+            return new BitmapSnapshot();
+        }
+    }
+
+    /**
+     * Draws the header, recording it first if it hasn't been recorded since the last
+     * {@link #invalidate()}.
+     */
+    final void draw(@NonNull Canvas canvas, @NonNull View header) {
+        if (!recorded) {
+            record(header);
+            recorded = true;
+        }
+
+        replay(canvas, header);
+    }
+
+    /**
+     * Marks the recording as stale, the header will be recorded again the next time it is drawn.
+     */
+    final void invalidate() {
+        recorded = false;
+    }
+
+    abstract void record(@NonNull View header);
+
+    abstract void replay(@NonNull Canvas canvas, @NonNull View header);
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static class RenderNodeSnapshot extends HeaderSnapshot {
+        private final RenderNode node = new RenderNode("header");
+
+        @Override
+        void record(@NonNull View header) {
+            final int width = header.getWidth();
+            final int height = header.getHeight();
+
+            node.setPosition(0, 0, width, height);
+            header.draw(node.beginRecording(width, height));
+            node.endRecording();
+        }
+
+        @Override
+        void replay(@NonNull Canvas canvas, @NonNull View header) {
+            if (canvas.isHardwareAccelerated()) {
+                canvas.drawRenderNode(node);
+            } else {
+                // render nodes can only be replayed on hardware canvases
+                header.draw(canvas);
+            }
+        }
+    }
+
+    private static class PictureSnapshot extends HeaderSnapshot {
+        private final Picture picture = new Picture();
+
+        @Override
+        void record(@NonNull View header) {
+            header.draw(picture.beginRecording(header.getWidth(), header.getHeight()));
+            picture.endRecording();
+        }
+
+        @Override
+        void replay(@NonNull Canvas canvas, @NonNull View header) {
+            canvas.drawPicture(picture);
+        }
+    }
+
+    private static class BitmapSnapshot extends HeaderSnapshot {
+        private Bitmap bitmap;
+
+        @Override
+        void record(@NonNull View header) {
+            final int width = Math.max(1, header.getWidth());
+            final int height = Math.max(1, header.getHeight());
+
+            if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } else {
+                bitmap.eraseColor(0);
+            }
+
+            header.draw(new Canvas(bitmap));
+        }
+
+        @Override
+        void replay(@NonNull Canvas canvas, @NonNull View header) {
+            canvas.drawBitmap(bitmap, 0, 0, null);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * Collects the positions touched by the adapter's change notifications, following them through
+ * later inserts, removals and moves, so the headers of the affected sections can be found once
+ * the whole update has been dispatched.
+ * <p>
+ * DiffUtil and ListAdapter report their updates as a series of these notifications, with each
+ * position relative to the list as it is after the notifications before it. The positions are
+ * only resolved to header ids in {@link #apply()}, against the final list.
+ */
+abstract class HeaderUpdateTracker extends AdapterObserver {
+    // past this many touched positions, every cached header is rebound instead
+    private static final int MAX_TRACKED = 256;
+
+    private int[] positions = new int[16];
+    private int count;
+    private boolean overflow;
+
+    /**
+     * Returns the header id for the given position of the updated list.
+     */
+    abstract long getHeaderId(int position);
+
+    /**
+     * Called once for every distinct header id found at the touched positions.
+     */
+    abstract void onHeaderChanged(long headerId);
+
+    /**
+     * Called instead of {@link #onHeaderChanged(long)} when the changes can't be narrowed down,
+     * such as after {@code notifyDataSetChanged()}.
+     */
+    abstract void onAllHeadersChanged();
+
+    /**
+     * Changes made while detached were missed, so every cached header is reported as changed once
+     * the tracker is attached again, or attached to another adapter.
+     */
+    @Override
+    void onDetached() {
+        count = 0;
+        overflow = true;
+    }
+
+    /**
+     * Reports the headers of the positions touched since the last call.
+     */
+    void apply() {
+        final RecyclerView.Adapter observed = getObserved();
+
+        if (overflow) {
+            onAllHeadersChanged();
+        } else if (count > 0 && observed != null) {
+            final int itemCount = observed.getItemCount();
+            Arrays.sort(positions, 0, count);
+
+            boolean first = true;
+            long previousId = 0;
+
+            for (int i = 0; i < count; i++) {
+                final int position = positions[i];
+
+                if (position < 0 || position >= itemCount) {
+                    continue;
+                }
+
+                final long id = getHeaderId(position);
+
+                if (first || id != previousId) {
+                    onHeaderChanged(id);
+                    first = false;
+                    previousId = id;
+                }
+            }
+        }
+
+        count = 0;
+        overflow = false;
+    }
+
+    @Override
+    public void onChanged() {
+        overflow = true;
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        add(positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+        onItemRangeChanged(positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        shift(positionStart, itemCount);
+        add(positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        final int end = positionStart + itemCount;
+
+        // forget the removed positions and move the ones after them up
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            final int position = positions[i];
+
+            if (position < positionStart) {
+                positions[kept++] = position;
+            } else if (position >= end) {
+                positions[kept++] = position - itemCount;
+            }
+        }
+        count = kept;
+
+        // the sections on both sides of the gap lost items
+        add(positionStart - 1, 2);
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        onItemRangeRemoved(fromPosition, itemCount);
+        onItemRangeInserted(toPosition, itemCount);
+    }
+
+    private void shift(int from, int delta) {
+        for (int i = 0; i < count; i++) {
+            if (positions[i] >= from) {
+                positions[i] += delta;
+            }
+        }
+    }
+
+    private void add(int positionStart, int itemCount) {
+        if (overflow) {
+            return;
+        }
+
+        if (count + itemCount > MAX_TRACKED) {
+            overflow = true;
+            return;
+        }
+
+        if (count + itemCount > positions.length) {
+            positions = Arrays.copyOf(positions,
+                    Math.max(count + itemCount, positions.length * 2));
+        }
+
+        for (int i = 0; i < itemCount; i++) {
+            positions[count++] = positionStart + i;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * An optional extension for a {@link StickyHeaderAdapter} whose headers come in more than one
+ * view type. Headers of the same view type can be rebound for one another, so the decoration
+ * reuses cached holders across header ids of the same type. Without it, every header has view
+ * type 0 and is created with {@link StickyHeaderAdapter#onCreateHeaderViewHolder(ViewGroup)}.
+ *
+ * @param <T> the header view holder
+ */
+public interface HeaderViewTypeProvider<T extends RecyclerView.ViewHolder> {
+    /**
+     * Returns the header view type for the item at the given position.
+     *
+     * @param position the item position
+     * @return the header view type
+     */
+    int getHeaderViewType(int position);
+
+    /**
+     * Creates a new header ViewHolder of the given view type.
+     *
+     * @param parent the header's view parent
+     * @param viewType the header view type, as returned by {@link #getHeaderViewType(int)}
+     * @return a view holder for the created view
+     */
+    @NonNull
+    T onCreateHeaderViewHolder(@NonNull ViewGroup parent, int viewType);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * The adapter to assist the {@link HierarchicalHeaderDecoration} in creating and binding the
+ * header views of every level.
+ * <p>
+ * Level 0 is the outermost level, such as the year of an event log grouped by year, month and
+ * day. A section of one level must lie within a single section of every level above it, so an
+ * item that starts a section also starts a section at every deeper level.
+ *
+ * @param <T> the header view holder
+ */
+public interface HierarchicalHeaderAdapter<T extends RecyclerView.ViewHolder> {
+    /**
+     * @return the number of header levels, from 1 to
+     * {@link HierarchicalHeaderDecoration#MAX_LEVELS}
+     */
+    int getLevelCount();
+
+    /**
+     * Returns the header id of the given level for the item at the given position.
+     *
+     * @param level the header level
+     * @param position the item position
+     * @return the header id
+     */
+    long getHeaderId(int level, int position);
+
+    /**
+     * Creates a new header ViewHolder for the given level.
+     *
+     * @param parent the header's view parent
+     * @param level the header level
+     * @return a view holder for the created view
+     */
+    @NonNull
+    T onCreateHeaderHolder(@NonNull ViewGroup parent, int level);
+
+    /**
+     * Updates the header view to reflect the header data of the given level for the given
+     * position.
+     *
+     * @param viewHolder the header view holder
+     * @param level the header level
+     * @param position the header's item position
+     */
+    void onBindHeaderHolder(@NonNull T viewHolder, int level, int position);
+}
@@ -0,0 +1,584 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * A sticky header decoration with any number of nested header levels, such as year, month and
+ * day headers over an event log. The pinned headers of every level stack from the top, and each
+ * is pushed up by the next section of its level.
+ * <p>
+ * Each level has its own header cache, and every level shares one per-frame pass over the
+ * children: the header ids of all levels are fetched for the visible range once per frame, and
+ * the headers of every level are placed as each child is visited. Once the headers in view are
+ * cached, scrolling and {@link #findHeaderViewUnder(int, float, float)} don't allocate.
+ */
+public class HierarchicalHeaderDecoration extends RecyclerView.ItemDecoration {
+    public static final int MAX_LEVELS = 8;
+
+    private final HierarchicalHeaderAdapter adapter;
+    private final int levelCount;
+    private final HeaderCache[] headerCaches;
+    private final HeaderFrame frame;
+    private final HeaderIdWindow headerIds;
+    private final boolean renderInline;
+
+    // per-frame scratch, indexed by level
+    private final HeaderCache.Entry[] levelEntries;
+    private final int[] levelTops;
+    private final int[] pinned;
+    private final int[] pinnedTops;
+    private final int[] pinnedHeights;
+
+    private RecyclerView recyclerView;
+    private DecorationMetrics metrics;
+    private final DecorationInvalidator invalidator = new DecorationInvalidator();
+    private boolean renderSnapshots;
+
+    // the tallest header measured so far, to cull headers before they are bound
+    private int maxHeaderHeight;
+
+    /**
+     * @param adapter the hierarchical header adapter to use
+     */
+    public HierarchicalHeaderDecoration(@NonNull HierarchicalHeaderAdapter adapter) {
+        this(adapter, false);
+    }
+
+    /**
+     * @param adapter the hierarchical header adapter to use
+     * @param renderInline whether the deepest level's headers are drawn over the first item of
+     * their section instead of above it
+     */
+    public HierarchicalHeaderDecoration(@NonNull final HierarchicalHeaderAdapter adapter,
+            boolean renderInline) {
+
+        final int levels = adapter.getLevelCount();
+
+        if (levels < 1 || levels > MAX_LEVELS) {
+            throw new IllegalArgumentException("Level count must be between 1 and "
+                    + MAX_LEVELS + ": " + levels);
+        }
+
+        this.adapter = adapter;
+        this.levelCount = levels;
+        this.headerCaches = new HeaderCache[levels];
+        this.frame = new HeaderFrame();
+        this.renderInline = renderInline;
+
+        for (int level = 0; level < levels; level++) {
+            headerCaches[level] = new HeaderCache();
+        }
+
+        this.levelEntries = new HeaderCache.Entry[levels];
+        this.levelTops = new int[levels];
+        this.pinned = new int[levels];
+        this.pinnedTops = new int[levels];
+        this.pinnedHeights = new int[levels];
+
+        this.headerIds = new HeaderIdWindow(levels) {
+            @Override
+            void load(int level, int start, int count, @NonNull long[] out) {
+                if (adapter instanceof HierarchicalHeaderIdRangeProvider) {
+                    ((HierarchicalHeaderIdRangeProvider) adapter).getHeaderIds(level, start, count,
+                            out);
+                    return;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    out[i] = adapter.getHeaderId(level, start + i);
+                }
+            }
+        };
+    }
+
+    /**
+     * Clears the header view cache of every level. Headers will be recreated and rebound on list
+     * scroll after this method has been called.
+     */
+    public void clearHeaderCache() {
+        for (HeaderCache cache : headerCaches) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Sets the maximum number of headers kept in the cache of each level. The least recently
+     * drawn header of a level is evicted when its cache is full.
+     *
+     * @param size the maximum cache size, or {@link HeaderCache#AUTO_SIZE} to size the caches
+     * from the number of visible children
+     */
+    public void setHeaderCacheSize(int size) {
+        for (HeaderCache cache : headerCaches) {
+            cache.setMaxSize(size);
+        }
+    }
+
+    /**
+     * @param level the header level
+     * @return the header view cache of the given level, for reading its size and hit, miss and
+     * eviction counts
+     */
+    @NonNull
+    public HeaderCache getHeaderCache(int level) {
+        return headerCaches[level];
+    }
+
+    /**
+     * Enables or disables snapshot rendering. When enabled, each header is recorded once after it
+     * is bound and measured, and later frames replay the recording with a single draw call
+     * instead of walking the header's view tree.
+     *
+     * @param enabled whether to draw headers from recorded snapshots
+     */
+    public void setSnapshotRenderingEnabled(boolean enabled) {
+        renderSnapshots = enabled;
+    }
+
+    /**
+     * Starts or stops collecting metrics. While a listener is set, the decoration counts header
+     * creates, binds, measures and cache lookups across every level, and times its
+     * {@code getItemOffsets} and {@code onDrawOver} calls, reporting to the listener after every
+     * frame.
+     *
+     * @param listener the listener to report to, or null to stop collecting metrics
+     */
+    public void setMetricsListener(@Nullable DecorationMetrics.Listener listener) {
+        metrics = listener != null ? new DecorationMetrics(listener, headerCaches) : null;
+    }
+
+    /**
+     * Rebinds the cached header with the given level and id the next time it is drawn, leaving
+     * every other cached header as it is.
+     *
+     * @param level the header level
+     * @param headerId the id of the header that changed
+     */
+    public void notifyHeaderChanged(int level, long headerId) {
+        notifyHeaderChanged(level, headerId, null);
+    }
+
+    /**
+     * Rebinds the cached header with the given level and id the next time it is drawn, passing
+     * the payload to
+     * {@link HierarchicalHeaderPayloadBinder#onBindHeaderHolder(RecyclerView.ViewHolder, int, int,
+     * List)} so only the changed part of the header has to be updated.
+     * Nothing happens if the header isn't cached, as it will be bound when it is created.
+     *
+     * @param level the header level
+     * @param headerId the id of the header that changed
+     * @param payload the partial update, or null for a full rebind
+     */
+    public void notifyHeaderChanged(int level, long headerId, @Nullable Object payload) {
+        if (headerCaches[level].markChanged(headerId, payload) && recyclerView != null) {
+            recyclerView.invalidate();
+        }
+    }
+
+    /**
+     * Finds the header of the given level drawn under the given point in the last frame.
+     *
+     * @param level the header level
+     * @param x the horizontal position, relative to the RecyclerView
+     * @param y the vertical position, relative to the RecyclerView
+     * @return the header view, or null if no header of that level was drawn there
+     */
+    @Nullable
+    public View findHeaderViewUnder(int level, float x, float y) {
+        return frame.findHeaderUnder(level, x, y);
+    }
+
+    /**
+     * @return a layer of a {@link CompositeDecoration} that draws this decoration with the
+     * composite's snapshot of the children, leaving the decoration itself unchanged
+     */
+    @NonNull
+    DecorationLayer asLayer() {
+        return new DecorationLayer() {
+            @Override
+            public void getItemOffsets(@NonNull Rect outRect, @NonNull View view, int position,
+                    @NonNull RecyclerView parent) {
+                HierarchicalHeaderDecoration.this.getItemOffsets(outRect, position, parent);
+            }
+
+            @Override
+            public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+                    @NonNull ChildSnapshot children) {
+                draw(canvas, parent, children);
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
+            @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        getItemOffsets(outRect, parent.getChildAdapterPosition(view), parent);
+    }
+
+    /**
+     * Sets the offsets of the item at the given adapter position, which a
+     * {@link CompositeDecoration} looks up once for all of its layers.
+     */
+    void getItemOffsets(@NonNull Rect outRect, int position, @NonNull RecyclerView parent) {
+        final long start = metrics != null ? System.nanoTime() : 0;
+        prepare(parent);
+
+        // offsets are only requested during layout, so the last frame's placements are stale
+        frame.invalidate();
+
+        int headerHeight = 0;
+
+        if (position != RecyclerView.NO_POSITION) {
+            // in a grid, every item in the first row of a section makes room for the headers
+            final int rowStart = GridRows.rowStart(parent, position);
+
+            for (int i = position; i >= rowStart; i--) {
+                final int level = getFirstStartedLevel(i);
+
+                if (level < levelCount) {
+                    for (int l = level; l < levelCount; l++) {
+                        headerHeight += getHeaderHeightForLayout(l, getHeader(parent, l, i));
+                    }
+                    break;
+                }
+            }
+        }
+
+        outRect.set(0, headerHeight, 0, 0);
+
+        if (metrics != null) {
+            metrics.onItemOffsets(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @NonNull RecyclerView.State state) {
+        draw(canvas, parent, null);
+    }
+
+    /**
+     * Draws the headers, reading the children from the given snapshot if it was already taken
+     * for this frame, or from a snapshot of the decoration's own otherwise.
+     */
+    private void draw(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @Nullable ChildSnapshot children) {
+
+        if (metrics == null) {
+            drawHeaders(canvas, parent, children);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        drawHeaders(canvas, parent, children);
+        metrics.onFrameDrawn(System.nanoTime() - start, frame.drawnCount());
+    }
+
+    private void drawHeaders(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @Nullable ChildSnapshot children) {
+        prepare(parent);
+
+        if (frame.isUnchanged(parent, canvas, cacheVersion(), children)) {
+            frame.draw(canvas, renderSnapshots);
+            return;
+        }
+
+        for (HeaderCache cache : headerCaches) {
+            cache.beginFrame();
+        }
+
+        headerIds.open(frame);
+
+        // the levels from this one down have been pushed by a later section, if at all
+        int resolved = levelCount;
+        boolean first = true;
+        final int count = frame.childCount();
+
+        for (int layoutPos = 0; layoutPos < count; layoutPos++) {
+            final View child = frame.child(layoutPos);
+            final int adapterPos = frame.childPosition(layoutPos);
+
+            if (adapterPos == RecyclerView.NO_POSITION) {
+                continue;
+            }
+
+            final int started = first ? 0 : getFirstStartedLevel(adapterPos);
+
+            if (started == levelCount) {
+                continue;
+            }
+
+            // headers that push no pinned header and are outside the clip are not bound
+            final boolean clipped = !first && started >= resolved
+                    && areHeadersClipped((int) child.getY(), levelCount - started);
+
+            // the headers above this child, placed upwards from the deepest level
+            int top = (int) child.getY();
+            boolean cached = true;
+            for (int level = levelCount - 1; level >= started; level--) {
+                final HeaderCache.Entry entry = clipped
+                        ? headerCaches[level].get(getHeaderId(level, adapterPos))
+                        : getHeader(parent, level, adapterPos);
+
+                if (entry == null) {
+                    cached = false;
+                    break;
+                }
+
+                top -= getHeaderHeightForLayout(level, entry);
+                levelEntries[level] = entry;
+                levelTops[level] = top;
+            }
+
+            if (!cached) {
+                // outside the clip and not cached, so there is nothing to hit test either
+                continue;
+            }
+
+            if (first) {
+                first = false;
+                pinHeaders(child, adapterPos);
+                continue;
+            }
+
+            // deeper levels are added first, so the levels above are drawn over them
+            for (int level = levelCount - 1; level >= started; level--) {
+                frame.add(levelEntries[level], level, child.getLeft(), levelTops[level]);
+            }
+
+            // the pinned headers of the levels this child starts a section of must end above
+            // its headers
+            for (int level = started; level < resolved; level++) {
+                final int limit = levelTops[started] - pinnedHeights[level];
+
+                if (limit < pinnedTops[level]) {
+                    frame.setTop(pinned[level], limit);
+                }
+            }
+
+            // a later child can only narrow the levels that are pushed
+            resolved = Math.min(resolved, started);
+        }
+
+        for (int level = 0; level < levelCount; level++) {
+            levelEntries[level] = null;
+        }
+
+        headerIds.close();
+        frame.commit(cacheVersion());
+        frame.draw(canvas, renderSnapshots);
+    }
+
+    /**
+     * Pins the headers of the first child, stacked from the top, unless the child starts their
+     * sections lower down.
+     */
+    private void pinHeaders(@NonNull View child, int adapterPos) {
+        final int startedLevel = getFirstStartedLevel(adapterPos);
+        int stackTop = 0;
+
+        for (int level = 0; level < levelCount; level++) {
+            final int height = levelEntries[level].holder.itemView.getHeight();
+            final int top = level >= startedLevel
+                    ? Math.max(stackTop, levelTops[level])
+                    : stackTop;
+
+            pinnedTops[level] = top;
+            pinnedHeights[level] = height;
+            stackTop += height;
+        }
+
+        for (int level = levelCount - 1; level >= 0; level--) {
+            pinned[level] = frame.add(levelEntries[level], level, child.getLeft(),
+                    pinnedTops[level]);
+        }
+    }
+
+    /**
+     * @return the outermost level whose section starts at the given position, or the level
+     * count if the position starts no section
+     */
+    private int getFirstStartedLevel(int position) {
+        if (position == 0) {
+            return 0;
+        }
+
+        for (int level = 0; level < levelCount; level++) {
+            if (getHeaderId(level, position) != getHeaderId(level, position - 1)) {
+                return level;
+            }
+        }
+
+        return levelCount;
+    }
+
+    private long getHeaderId(int level, int position) {
+        if (headerIds.contains(position)) {
+            return headerIds.get(level, position);
+        }
+        return adapter.getHeaderId(level, position);
+    }
+
+    /**
+     * @return a version that changes whenever the cache of any level changes
+     */
+    private int cacheVersion() {
+        int version = 0;
+        for (HeaderCache cache : headerCaches) {
+            version += cache.version();
+        }
+        return version;
+    }
+
+    @NonNull
+    private HeaderCache.Entry getHeader(@NonNull RecyclerView parent, int level, int position) {
+        final HeaderCache headerCache = headerCaches[level];
+        final long key = getHeaderId(level, position);
+        final HeaderCache.Entry cached = headerCache.get(key);
+
+        if (cached != null) {
+            if (cached.needsBind) {
+                rebindHeader(parent, cached, level, position);
+            } else if (cached.measuredWidth != parent.getMeasuredWidth()) {
+                remeasureHeader(parent, cached);
+            }
+
+            return cached;
+        }
+
+        // each level pools its own holders, with the level as their view type
+        HeaderCache.Entry entry = headerCache.acquire(level);
+
+        if (entry == null) {
+            entry = new HeaderCache.Entry(adapter.onCreateHeaderHolder(parent, level), level);
+
+            if (metrics != null) {
+                metrics.onHeaderCreated();
+            }
+        }
+
+        //noinspection unchecked
+        adapter.onBindHeaderHolder(entry.holder, level, position);
+
+        if (metrics != null) {
+            metrics.onHeaderBound();
+        }
+
+        measureHeader(parent, entry);
+
+        return headerCache.put(key, entry);
+    }
+
+    private void rebindHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+            int level, int position) {
+
+        if (adapter instanceof HierarchicalHeaderPayloadBinder) {
+            //noinspection unchecked
+            ((HierarchicalHeaderPayloadBinder) adapter).onBindHeaderHolder(entry.holder, level,
+                    position, entry.getPayloads());
+        } else {
+            //noinspection unchecked
+            adapter.onBindHeaderHolder(entry.holder, level, position);
+        }
+
+        entry.onBound();
+
+        if (metrics != null) {
+            metrics.onHeaderBound();
+        }
+
+        remeasureHeader(parent, entry);
+    }
+
+    /**
+     * Measures a cached header again, after it was rebound or the RecyclerView's width changed,
+     * keeping its bound holder.
+     */
+    private void remeasureHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry) {
+        final int height = entry.holder.itemView.getHeight();
+
+        measureHeader(parent, entry);
+        entry.invalidateSnapshot();
+
+        if (entry.holder.itemView.getHeight() != height) {
+            // the item offsets depend on the header heights, which may be
+            // measured in the middle of a layout or scroll
+            invalidator.invalidate(parent);
+        }
+    }
+
+    /**
+     * Returns whether the given number of headers stacked above a child at the given top would be
+     * outside the clip, even if all were as tall as the tallest one measured so far.
+     */
+    private boolean areHeadersClipped(int childTop, int levels) {
+        return frame.isClipped(childTop - levels * maxHeaderHeight, childTop + maxHeaderHeight);
+    }
+
+    private void measureHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry) {
+        final View header = entry.holder.itemView;
+        entry.measuredWidth = parent.getMeasuredWidth();
+
+        if (metrics != null) {
+            metrics.onHeaderMeasured();
+        }
+
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(entry.measuredWidth,
+                View.MeasureSpec.EXACTLY);
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(parent.getMeasuredHeight(),
+                View.MeasureSpec.UNSPECIFIED);
+
+        int childWidth = ViewGroup.getChildMeasureSpec(widthSpec,
+                parent.getPaddingLeft() + parent.getPaddingRight(),
+                header.getLayoutParams().width);
+        int childHeight = ViewGroup.getChildMeasureSpec(heightSpec,
+                parent.getPaddingTop() + parent.getPaddingBottom(),
+                header.getLayoutParams().height);
+
+        header.measure(childWidth, childHeight);
+        header.layout(0, 0, header.getMeasuredWidth(), header.getMeasuredHeight());
+        maxHeaderHeight = Math.max(maxHeaderHeight, header.getMeasuredHeight());
+    }
+
+    private void prepare(@NonNull RecyclerView parent) {
+        recyclerView = parent;
+        for (HeaderCache cache : headerCaches) {
+            cache.ensureAutoSize(parent.getChildCount());
+        }
+    }
+
+    private int getHeaderHeightForLayout(int level, @NonNull HeaderCache.Entry entry) {
+        return renderInline && level == levelCount - 1 ? 0 : entry.holder.itemView.getHeight();
+    }
+}
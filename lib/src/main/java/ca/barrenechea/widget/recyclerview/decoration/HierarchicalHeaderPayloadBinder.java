@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * An optional extension for a {@link HierarchicalHeaderAdapter} that applies partial updates to a
+ * header. Without it, a header notified as changed is always fully rebound with
+ * {@link HierarchicalHeaderAdapter#onBindHeaderHolder(RecyclerView.ViewHolder, int, int)}.
+ *
+ * @param <T> the header view holder
+ */
+public interface HierarchicalHeaderPayloadBinder<T extends RecyclerView.ViewHolder> {
+    /**
+     * Updates the header view after it was notified as changed through
+     * {@link HierarchicalHeaderDecoration#notifyHeaderChanged(int, long, Object)}. The payloads
+     * hold every partial update notified since the header was last bound; when they're empty the
+     * header must be fully rebound.
+     *
+     * @param viewHolder the header view holder
+     * @param level the header level
+     * @param position the header's item position
+     * @param payloads the partial updates to apply, or an empty list for a full rebind
+     */
+    void onBindHeaderHolder(@NonNull T viewHolder, int level, int position,
+            @NonNull List<Object> payloads);
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * A {@link DoubleHeaderAdapter} for paged lists with placeholders. Header and subheader ids are
+ * read from the loaded items only, and positions that still hold placeholders report
+ * {@link DoubleHeaderDecoration#UNKNOWN_HEADER_ID}, so no header or subheader is created, cached
+ * or made room for until their items load.
+ *
+ * @param <I> the item type
+ * @param <H> the header view holder
+ * @param <S> the subheader view holder
+ */
+public abstract class PagedDoubleHeaderAdapter<I, H extends RecyclerView.ViewHolder,
+        S extends RecyclerView.ViewHolder> implements DoubleHeaderAdapter<H, S> {
+
+    private final PeekableItems<I> items;
+
+    /**
+     * @param items the paged items, read without triggering loads
+     */
+    protected PagedDoubleHeaderAdapter(@NonNull PeekableItems<I> items) {
+        this.items = items;
+    }
+
+    /**
+     * Returns the header id for a loaded item.
+     *
+     * @param item the item
+     * @return the header id
+     */
+    public abstract long getHeaderIdForItem(@NonNull I item);
+
+    /**
+     * Returns the subheader id for a loaded item.
+     *
+     * @param item the item
+     * @return the subheader id
+     */
+    public abstract long getSubHeaderIdForItem(@NonNull I item);
+
+    @Override
+    public final long getHeaderId(int position) {
+        final I item = items.peek(position);
+        return item != null
+                ? getHeaderIdForItem(item)
+                : DoubleHeaderDecoration.UNKNOWN_HEADER_ID;
+    }
+
+    @Override
+    public final long getSubHeaderId(int position) {
+        final I item = items.peek(position);
+        return item != null
+                ? getSubHeaderIdForItem(item)
+                : DoubleHeaderDecoration.UNKNOWN_HEADER_ID;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * A {@link StickyHeaderAdapter} for paged lists with placeholders. Header ids are read from the
+ * loaded items only, and positions that still hold placeholders report
+ * {@link StickyHeaderDecoration#UNKNOWN_HEADER_ID}, so no header is created, cached or made room
+ * for until their items load.
+ * <p>
+ * With separators inserted into the paged data, the items can carry the id of the section they
+ * belong to, so {@link #getHeaderIdForItem(Object)} doesn't need to look at other positions.
+ *
+ * @param <I> the item type
+ * @param <T> the header view holder
+ */
+public abstract class PagedStickyHeaderAdapter<I, T extends RecyclerView.ViewHolder>
+        implements StickyHeaderAdapter<T> {
+
+    private final PeekableItems<I> items;
+
+    /**
+     * @param items the paged items, read without triggering loads
+     */
+    protected PagedStickyHeaderAdapter(@NonNull PeekableItems<I> items) {
+        this.items = items;
+    }
+
+    /**
+     * Returns the header id for a loaded item.
+     *
+     * @param item the item
+     * @return the header id, or {@link StickyHeaderDecoration#NO_HEADER_ID}
+     */
+    public abstract long getHeaderIdForItem(@NonNull I item);
+
+    @Override
+    public final long getHeaderId(int position) {
+        final I item = items.peek(position);
+        return item != null
+                ? getHeaderIdForItem(item)
+                : StickyHeaderDecoration.UNKNOWN_HEADER_ID;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Reads the items of a paged list without triggering loads, such as
+ * {@code PagingDataAdapter.peek(int)} or {@code PagedListAdapter.getCurrentList().get(int)} with
+ * placeholders enabled.
+ *
+ * @param <I> the item type
+ */
+public interface PeekableItems<I> {
+    /**
+     * Returns the item at the given position, if it is loaded.
+     *
+     * @param position the item position
+     * @return the item, or null if the position holds a placeholder
+     */
+    @Nullable
+    I peek(int position);
+}
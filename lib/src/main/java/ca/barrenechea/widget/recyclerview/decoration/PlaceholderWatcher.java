@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Requests new item offsets once items whose header ids were unknown may have loaded.
+ * <p>
+ * Whether an item starts a section depends on the item before it, but a paged adapter only
+ * reports the loaded items as changed, so the offsets of the loaded items next to them would
+ * otherwise stay as they were computed while their neighbours were placeholders.
+ */
+final class PlaceholderWatcher extends AdapterObserver {
+    private final DecorationInvalidator invalidator = new DecorationInvalidator();
+    private RecyclerView parent;
+    private boolean pending;
+
+    /**
+     * Called when a header id was reported as unknown. The next change notification from the
+     * parent's adapter invalidates the parent's item decorations.
+     */
+    void onUnknownHeaderId(@Nullable RecyclerView parent) {
+        if (parent == null) {
+            return;
+        }
+
+        this.parent = parent;
+        pending = true;
+        attach(parent.getAdapter());
+    }
+
+    @Override
+    void onAttached() {
+        pending = isAttached();
+    }
+
+    @Override
+    void onDetached() {
+        pending = false;
+    }
+
+    @Override
+    public void onChanged() {
+        onItemsChanged();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        onItemsChanged();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+        onItemsChanged();
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        onItemsChanged();
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        onItemsChanged();
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        onItemsChanged();
+    }
+
+    private void onItemsChanged() {
+        if (!pending || parent == null) {
+            return;
+        }
+
+        pending = false;
+        invalidator.invalidate(parent);
+    }
+}
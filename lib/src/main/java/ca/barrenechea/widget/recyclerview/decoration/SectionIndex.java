@@ -0,0 +1,270 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * A compact index of section start positions and their header ids.
+ * <p>
+ * The index is built once from the adapter and then kept up to date incrementally from the
+ * adapter's change notifications; only the positions touched by a change are looked up again.
+ */
+abstract class SectionIndex extends AdapterObserver {
+    private boolean valid;
+    private int itemCount;
+
+    // bumped whenever the sections change, so derived data can tell when to recompute
+    private int version;
+
+    // starts[i] is the first position of section i, ids[i] its header id
+    private int[] starts = new int[16];
+    private long[] ids = new long[16];
+    private int sectionCount;
+
+    // scratch buffers for the sections found while rescanning a range
+    private int[] scanStarts = new int[16];
+    private long[] scanIds = new long[16];
+
+    /**
+     * Returns the header id for the given position, straight from the adapter.
+     */
+    abstract long getHeaderId(int position);
+
+    /**
+     * The index is rebuilt lazily the next time it is queried after it moved to another adapter
+     * or stopped observing one.
+     */
+    @Override
+    void onAttached() {
+        valid = false;
+    }
+
+    @Override
+    void onDetached() {
+        valid = false;
+    }
+
+    /**
+     * @return whether the given position is the first position of its section
+     */
+    boolean isSectionStart(int position) {
+        ensureValid();
+        return Arrays.binarySearch(starts, 0, sectionCount, position) >= 0;
+    }
+
+    /**
+     * @return the header id of the section containing the given position
+     */
+    long headerIdAt(int position) {
+        ensureValid();
+        final int section = sectionOf(position);
+        return section >= 0 ? ids[section] : getHeaderId(position);
+    }
+
+    /**
+     * @return the number of sections
+     */
+    int sectionCount() {
+        ensureValid();
+        return sectionCount;
+    }
+
+    /**
+     * @return the first position of the given section
+     */
+    int sectionStart(int section) {
+        ensureValid();
+        return starts[section];
+    }
+
+    /**
+     * @return the number of items in the given section
+     */
+    int sectionSize(int section) {
+        ensureValid();
+        final int end = section + 1 < sectionCount ? starts[section + 1] : itemCount;
+        return end - starts[section];
+    }
+
+    /**
+     * @return the section containing the given position, or -1 if there are no items
+     */
+    int sectionOf(int position) {
+        ensureValid();
+        final int index = Arrays.binarySearch(starts, 0, sectionCount, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private void ensureValid() {
+        if (!valid) {
+            final RecyclerView.Adapter observed = getObserved();
+            itemCount = observed != null ? observed.getItemCount() : 0;
+            sectionCount = 0;
+            rescan(0, itemCount - 1);
+            valid = true;
+        }
+    }
+
+    /**
+     * @return a number that changes whenever the sections change
+     */
+    int version() {
+        ensureValid();
+        return version;
+    }
+
+    @Override
+    public void onChanged() {
+        valid = false;
+        version++;
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        if (valid) {
+            rescan(positionStart, positionStart + itemCount);
+        }
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+        onItemRangeChanged(positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        if (valid) {
+            this.itemCount += itemCount;
+            shift(positionStart, itemCount);
+            rescan(positionStart, positionStart + itemCount);
+        }
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (valid) {
+            removeStarts(positionStart, positionStart + itemCount - 1);
+            this.itemCount -= itemCount;
+            shift(positionStart + itemCount, -itemCount);
+            rescan(positionStart, positionStart);
+        }
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (valid) {
+            // a move only reorders the items between its two ends, so the starts outside them stay
+            // where they are, and the ones inside, plus the item right after, are looked up again
+            rescan(Math.min(fromPosition, toPosition),
+                    Math.max(fromPosition, toPosition) + itemCount);
+        }
+    }
+
+    /**
+     * Moves every section start at or after the given position by the given delta.
+     */
+    private void shift(int from, int delta) {
+        for (int i = sectionCount - 1; i >= 0 && starts[i] >= from; i--) {
+            starts[i] += delta;
+        }
+
+        version++;
+    }
+
+    /**
+     * Looks up the header ids for the positions in the inclusive range again and replaces the
+     * section starts found in it.
+     */
+    private void rescan(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(itemCount - 1, to);
+
+        if (from > to) {
+            return;
+        }
+
+        int found = 0;
+        long previousId = from > 0 ? getHeaderId(from - 1) : 0;
+
+        for (int position = from; position <= to; position++) {
+            final long id = getHeaderId(position);
+
+            if (position == 0 || id != previousId) {
+                if (found == scanStarts.length) {
+                    scanStarts = Arrays.copyOf(scanStarts, found * 2);
+                    scanIds = Arrays.copyOf(scanIds, found * 2);
+                }
+
+                scanStarts[found] = position;
+                scanIds[found] = id;
+                found++;
+            }
+
+            previousId = id;
+        }
+
+        version++;
+
+        final int index = removeStarts(from, to);
+        ensureCapacity(sectionCount + found);
+        System.arraycopy(starts, index, starts, index + found, sectionCount - index);
+        System.arraycopy(ids, index, ids, index + found, sectionCount - index);
+        System.arraycopy(scanStarts, 0, starts, index, found);
+        System.arraycopy(scanIds, 0, ids, index, found);
+        sectionCount += found;
+    }
+
+    /**
+     * Removes the section starts within the inclusive range.
+     *
+     * @return the index at which the removed starts used to be
+     */
+    private int removeStarts(int from, int to) {
+        int first = Arrays.binarySearch(starts, 0, sectionCount, from);
+        first = first >= 0 ? first : -first - 1;
+
+        int last = first;
+        while (last < sectionCount && starts[last] <= to) {
+            last++;
+        }
+
+        System.arraycopy(starts, last, starts, first, sectionCount - last);
+        System.arraycopy(ids, last, ids, first, sectionCount - last);
+        sectionCount -= last - first;
+
+        return first;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            final int size = Math.max(capacity, starts.length * 2);
+            starts = Arrays.copyOf(starts, size);
+            ids = Arrays.copyOf(ids, size);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SectionIndex{sections=" + sectionCount + ", items=" + itemCount + "}";
+    }
+}
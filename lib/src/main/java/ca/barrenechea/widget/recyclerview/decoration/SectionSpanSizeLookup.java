@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * A span size lookup for grids with header decorations, which starts every section on a new row
+ * by stretching the last item of each section over the rest of its row.
+ * <p>
+ * Span indices and row indices are computed from the section boundaries, instead of the linear
+ * scans of the default lookup, so the cost of a lookup doesn't grow with the position. The
+ * boundaries are kept in an index that is updated from the adapter's change notifications.
+ * <p>
+ * The span count given here must match the initial one of the GridLayoutManager. After that, the
+ * lookup follows the span count the layout manager passes to {@link #getSpanIndex(int, int)} and
+ * {@link #getSpanGroupIndex(int, int)}, so changing it with
+ * {@link GridLayoutManager#setSpanCount(int)} is picked up on the next layout. Call
+ * {@link #detach()} once the lookup is no longer used, so the adapter doesn't keep it
+ * registered.
+ */
+public class SectionSpanSizeLookup extends GridLayoutManager.SpanSizeLookup {
+    private final SectionIndex index;
+    private final RecyclerView.Adapter adapter;
+
+    // the span count GridLayoutManager last passed in, as getSpanSize isn't given one
+    private int spanCount;
+
+    // rowsBefore[i] is the number of rows taken by the sections before section i
+    private int[] rowsBefore = new int[16];
+    private int rowsVersion;
+    private int rowsSpanCount;
+
+    private SectionSpanSizeLookup(@NonNull SectionIndex index,
+            @NonNull RecyclerView.Adapter adapter, int spanCount) {
+
+        if (spanCount < 1) {
+            throw new IllegalArgumentException("spanCount < 1");
+        }
+
+        this.index = index;
+        this.adapter = adapter;
+        this.spanCount = spanCount;
+        index.attach(adapter);
+    }
+
+    /**
+     * Stops observing the adapter. The lookup starts observing it again, and rebuilds its
+     * sections, the next time it is used.
+     */
+    public void detach() {
+        index.detach();
+    }
+
+    /**
+     * Creates a lookup whose sections are the ones of a {@link StickyHeaderDecoration}.
+     *
+     * @param adapter the RecyclerView adapter, observed to keep the sections up to date
+     * @param headerAdapter the sticky header adapter the sections are read from
+     * @param spanCount the span count of the GridLayoutManager
+     */
+    @NonNull
+    public static SectionSpanSizeLookup forStickyHeaders(@NonNull RecyclerView.Adapter adapter,
+            @NonNull final StickyHeaderAdapter headerAdapter, int spanCount) {
+
+        return new SectionSpanSizeLookup(new SectionIndex() {
+            @Override
+            long getHeaderId(int position) {
+                return headerAdapter.getHeaderId(position);
+            }
+        }, adapter, spanCount);
+    }
+
+    /**
+     * Creates a lookup whose sections are the subheader sections of a
+     * {@link DoubleHeaderDecoration}.
+     *
+     * @param adapter the RecyclerView adapter, observed to keep the sections up to date
+     * @param headerAdapter the double header adapter the sections are read from
+     * @param spanCount the span count of the GridLayoutManager
+     */
+    @NonNull
+    public static SectionSpanSizeLookup forDoubleHeaders(@NonNull RecyclerView.Adapter adapter,
+            @NonNull final DoubleHeaderAdapter headerAdapter, int spanCount) {
+
+        return new SectionSpanSizeLookup(new SectionIndex() {
+            @Override
+            long getHeaderId(int position) {
+                return headerAdapter.getSubHeaderId(position);
+            }
+        }, adapter, spanCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSpanSize(int position) {
+        ensureAttached();
+        final int section = index.sectionOf(position);
+        final int offset = position - index.sectionStart(section);
+
+        if (offset == index.sectionSize(section) - 1) {
+            // the last item of the section fills its row
+            return spanCount - offset % spanCount;
+        }
+
+        return 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSpanIndex(int position, int spanCount) {
+        ensureAttached();
+        this.spanCount = spanCount;
+        final int section = index.sectionOf(position);
+        return (position - index.sectionStart(section)) % spanCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSpanGroupIndex(int adapterPosition, int spanCount) {
+        ensureAttached();
+        this.spanCount = spanCount;
+        final int section = index.sectionOf(adapterPosition);
+        ensureRows(spanCount);
+        return rowsBefore[section] + (adapterPosition - index.sectionStart(section)) / spanCount;
+    }
+
+    private void ensureAttached() {
+        if (!index.isAttached()) {
+            index.attach(adapter);
+        }
+    }
+
+    private void ensureRows(int spanCount) {
+        final int version = index.version();
+        final int count = index.sectionCount();
+
+        if (version == rowsVersion && spanCount == rowsSpanCount && count <= rowsBefore.length) {
+            return;
+        }
+
+        if (count > rowsBefore.length) {
+            rowsBefore = Arrays.copyOf(rowsBefore, Math.max(count, rowsBefore.length * 2));
+        }
+
+        int rows = 0;
+        for (int i = 0; i < count; i++) {
+            rowsBefore[i] = rows;
+            rows += (index.sectionSize(i) + spanCount - 1) / spanCount;
+        }
+
+        rowsVersion = version;
+        rowsSpanCount = spanCount;
+    }
+}
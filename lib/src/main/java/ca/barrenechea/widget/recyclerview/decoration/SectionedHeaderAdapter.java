@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * The adapter to assist the {@link StickyHeaderDecoration} with data that is already grouped
+ * into sections. Instead of an id for every position, the adapter reports where each section
+ * starts, and the decoration finds the section of a position with a binary search.
+ * <p>
+ * Sections must be contiguous and in order: section {@code i + 1} starts after section
+ * {@code i}, and the items before the first section have no header. The section starts are
+ * read again after the RecyclerView adapter notifies a change, so every change must be reported
+ * through the {@code notify*} methods.
+ *
+ * @param <T> the header view holder
+ */
+public interface SectionedHeaderAdapter<T extends RecyclerView.ViewHolder> {
+    /**
+     * @return the number of sections
+     */
+    int getSectionCount();
+
+    /**
+     * Returns the position of the first item of the given section.
+     *
+     * @param section the section, from 0 to {@link #getSectionCount()} - 1
+     * @return the item position
+     */
+    int getSectionStart(int section);
+
+    /**
+     * Creates a new section header ViewHolder.
+     *
+     * @param parent the header's view parent
+     * @return a view holder for the created view
+     */
+    @NonNull
+    T onCreateSectionHeader(@NonNull ViewGroup parent);
+
+    /**
+     * Updates the header view to reflect the given section.
+     *
+     * @param viewHolder the header view holder
+     * @param section the section
+     */
+    void onBindSectionHeader(@NonNull T viewHolder, int section);
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * Presents a {@link SectionedHeaderAdapter} as a {@link StickyHeaderAdapter} whose header ids are
+ * the section numbers. The section starts are copied into a sorted array, so a position is
+ * resolved to its section with a binary search, and are copied again after the RecyclerView
+ * adapter notifies a change. Cached headers are only rebound when the starts actually moved, or
+ * after {@code notifyDataSetChanged()}.
+ */
+final class SectionedHeaders extends AdapterObserver
+        implements StickyHeaderAdapter<RecyclerView.ViewHolder>, HeaderIdRangeProvider {
+
+    private final SectionedHeaderAdapter adapter;
+
+    private boolean valid;
+    private boolean built;
+    private boolean reset;
+    private boolean changed;
+
+    private int[] starts = new int[16];
+    private int sectionCount;
+
+    SectionedHeaders(@NonNull SectionedHeaderAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    /**
+     * The section starts are read again after moving to another adapter, or after notifications
+     * were missed while detached.
+     */
+    @Override
+    void onAttached() {
+        onChanged();
+    }
+
+    /**
+     * Reads the section starts again if the adapter notified a change since they were last read.
+     * Called before the decoration looks anything up, so headers are never drawn for the old
+     * sections after they changed.
+     */
+    void update() {
+        if (valid) {
+            return;
+        }
+
+        final int count = adapter.getSectionCount();
+        boolean moved = reset || count != sectionCount;
+
+        if (count > starts.length) {
+            starts = Arrays.copyOf(starts, Math.max(count, starts.length * 2));
+        }
+
+        for (int i = 0; i < count; i++) {
+            final int start = adapter.getSectionStart(i);
+            moved |= start != starts[i];
+            starts[i] = start;
+        }
+
+        sectionCount = count;
+        valid = true;
+        reset = false;
+
+        changed |= moved && built;
+        built = true;
+    }
+
+    /**
+     * Returns whether the sections changed since the last call, so the headers cached for the
+     * old section numbers have to be rebound.
+     */
+    boolean takeChange() {
+        final boolean result = changed;
+        changed = false;
+        return result;
+    }
+
+    /**
+     * @return the section containing the given position, or -1 if it comes before the first
+     */
+    int sectionOf(int position) {
+        update();
+        final int index = Arrays.binarySearch(starts, 0, sectionCount, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    @Override
+    public long getHeaderId(int position) {
+        final int section = sectionOf(position);
+        return section >= 0 ? section : StickyHeaderDecoration.NO_HEADER_ID;
+    }
+
+    @Override
+    public void getHeaderIds(int start, int count, @NonNull long[] out) {
+        update();
+        int section = sectionOf(start);
+        int next = section + 1 < sectionCount ? starts[section + 1] : Integer.MAX_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            // walk the sections along the range rather than searching for every position
+            while (start + i >= next) {
+                section++;
+                next = section + 1 < sectionCount ? starts[section + 1] : Integer.MAX_VALUE;
+            }
+
+            out[i] = section >= 0 ? section : StickyHeaderDecoration.NO_HEADER_ID;
+        }
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateHeaderViewHolder(@NonNull ViewGroup parent) {
+        return adapter.onCreateSectionHeader(parent);
+    }
+
+    @Override
+    public void onBindHeaderViewHolder(@NonNull RecyclerView.ViewHolder viewHolder, int position) {
+        //noinspection unchecked
+        adapter.onBindSectionHeader(viewHolder, sectionOf(position));
+    }
+
+    private void invalidate() {
+        valid = false;
+    }
+
+    @Override
+    public void onChanged() {
+        // the sections may have kept their starts but not their contents
+        reset = true;
+        invalidate();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        invalidate();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+        invalidate();
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        invalidate();
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        invalidate();
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        invalidate();
+    }
+}
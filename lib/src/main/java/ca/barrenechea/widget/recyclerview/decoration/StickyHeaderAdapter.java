@@ -31,7 +31,8 @@
      * Returns the header id for the item at the given position.
      *
      * @param position the item position
-     * @return the header id
+     * @return the header id, {@link StickyHeaderDecoration#NO_HEADER_ID} for items without a
+     * header, or {@link StickyHeaderDecoration#UNKNOWN_HEADER_ID} for items that aren't loaded yet
      */
     long getHeaderId(int position);
 
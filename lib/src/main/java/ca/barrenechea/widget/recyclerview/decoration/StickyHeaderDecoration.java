@@ -20,23 +20,47 @@
 import android.graphics.Rect;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.view.ViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A sticky header decoration for android's RecyclerView.
+ * <p>
+ * Once the headers in view are cached, scrolling and {@link #findHeaderViewUnder(float, float)}
+ * don't allocate.
  */
 public class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
     public static final long NO_HEADER_ID = -1L;
 
-    private Map<Long, RecyclerView.ViewHolder> headerCache;
+    /**
+     * The header id for items that aren't loaded yet, such as placeholders in a paged list. No
+     * header is created or made room for until the item loads. The value is reserved, so it
+     * can't be used as the id of a real header.
+     */
+    public static final long UNKNOWN_HEADER_ID = Long.MIN_VALUE;
+
+    private HeaderCache headerCache;
     private StickyHeaderAdapter adapter;
+    private SectionIndex sectionIndex;
+    private SectionedHeaders sections;
+    private HeaderUpdateTracker updateTracker;
+    private PlaceholderWatcher placeholderWatcher;
+    private final AdapterObservers observers = new AdapterObservers();
+    private HeaderPrefetcher prefetcher;
+    private HeaderFrame frame;
+    private HeaderIdWindow headerIds;
+    private RecyclerView recyclerView;
+    private DecorationMetrics metrics;
+    private final DecorationInvalidator invalidator = new DecorationInvalidator();
     private boolean renderInline;
+    private boolean renderSnapshots;
+
+    // the tallest header measured so far, to cull headers before they are bound and measured
+    private int maxHeaderHeight;
 
     /**
      * @param adapter the sticky header adapter to use
@@ -45,13 +69,67 @@ public StickyHeaderDecoration(@NonNull StickyHeaderAdapter adapter) {
         this(adapter, false);
     }
 
+    /**
+     * @param adapter the sectioned header adapter to use
+     */
+    public StickyHeaderDecoration(@NonNull SectionedHeaderAdapter adapter) {
+        this(adapter, false);
+    }
+
+    /**
+     * @param adapter the sectioned header adapter to use
+     */
+    public StickyHeaderDecoration(@NonNull SectionedHeaderAdapter adapter, boolean renderInline) {
+        this(new SectionedHeaders(adapter), renderInline);
+
+        this.sections = (SectionedHeaders) this.adapter;
+        observers.add(sections);
+    }
+
     /**
      * @param adapter the sticky header adapter to use
      */
-    public StickyHeaderDecoration(@NonNull StickyHeaderAdapter adapter, boolean renderInline) {
+    public StickyHeaderDecoration(@NonNull final StickyHeaderAdapter adapter,
+            boolean renderInline) {
+
         this.adapter = adapter;
-        this.headerCache = new HashMap<>();
+        this.headerCache = new HeaderCache();
+        this.frame = new HeaderFrame();
         this.renderInline = renderInline;
+        this.headerIds = new HeaderIdWindow(1) {
+            @Override
+            void load(int level, int start, int count, @NonNull long[] out) {
+                if (adapter instanceof HeaderIdRangeProvider) {
+                    ((HeaderIdRangeProvider) adapter).getHeaderIds(start, count, out);
+                    return;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    out[i] = adapter.getHeaderId(start + i);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return a layer of a {@link CompositeDecoration} that draws this decoration with the
+     * composite's snapshot of the children, leaving the decoration itself unchanged
+     */
+    @NonNull
+    DecorationLayer asLayer() {
+        return new DecorationLayer() {
+            @Override
+            public void getItemOffsets(@NonNull Rect outRect, @NonNull View view, int position,
+                    @NonNull RecyclerView parent) {
+                StickyHeaderDecoration.this.getItemOffsets(outRect, position, parent);
+            }
+
+            @Override
+            public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+                    @NonNull ChildSnapshot children) {
+                draw(canvas, parent, children);
+            }
+        };
     }
 
     /**
@@ -60,26 +138,72 @@ public StickyHeaderDecoration(@NonNull StickyHeaderAdapter adapter, boolean rend
     @Override
     public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
             @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        getItemOffsets(outRect, parent.getChildAdapterPosition(view), parent);
+    }
+
+    /**
+     * Sets the offsets of the item at the given adapter position, which a
+     * {@link CompositeDecoration} looks up once for all of its layers.
+     */
+    void getItemOffsets(@NonNull Rect outRect, int position, @NonNull RecyclerView parent) {
+        final long start = metrics != null ? System.nanoTime() : 0;
+        prepare(parent);
+
+        // offsets are only requested during layout, so the last frame's placements are stale
+        frame.invalidate();
 
-        int position = parent.getChildAdapterPosition(view);
         int headerHeight = 0;
 
-        if (position != RecyclerView.NO_POSITION
-                && hasHeader(position)
-                && showHeaderAboveItem(position)) {
+        if (position != RecyclerView.NO_POSITION) {
+            // in a grid, every item in the first row of a section makes room for the header
+            final int sectionStart = findSectionStartInRow(parent, position);
 
-            View header = getHeader(parent, position).itemView;
-            headerHeight = getHeaderHeightForLayout(header);
+            if (sectionStart != RecyclerView.NO_POSITION && hasHeader(sectionStart)) {
+                View header = getHeader(parent, sectionStart).holder.itemView;
+                headerHeight = getHeaderHeightForLayout(header);
+            }
         }
 
         outRect.set(0, headerHeight, 0, 0);
+
+        if (metrics != null) {
+            metrics.onItemOffsets(System.nanoTime() - start);
+        }
+    }
+
+    private int findSectionStartInRow(@NonNull RecyclerView parent, int position) {
+        final int rowStart = GridRows.rowStart(parent, position);
+
+        for (int i = position; i >= rowStart; i--) {
+            if (showHeaderAboveItem(i)) {
+                return i;
+            }
+        }
+
+        return RecyclerView.NO_POSITION;
     }
 
     private boolean showHeaderAboveItem(int itemAdapterPosition) {
         if (itemAdapterPosition == 0) {
-            return true;
+            return getHeaderId(0) != UNKNOWN_HEADER_ID;
+        }
+        if (sectionIndex != null && sectionIndex.isAttached()) {
+            return sectionIndex.isSectionStart(itemAdapterPosition)
+                    && isLoadedSectionStart(itemAdapterPosition);
         }
-        return adapter.getHeaderId(itemAdapterPosition - 1) != adapter.getHeaderId(itemAdapterPosition);
+
+        final long previousId = getHeaderId(itemAdapterPosition - 1);
+        final long id = getHeaderId(itemAdapterPosition);
+        return previousId != id && previousId != UNKNOWN_HEADER_ID && id != UNKNOWN_HEADER_ID;
+    }
+
+    /**
+     * @return whether the item and the one before it are both loaded, so the item is known to
+     * start a section
+     */
+    private boolean isLoadedSectionStart(int itemAdapterPosition) {
+        return getHeaderId(itemAdapterPosition) != UNKNOWN_HEADER_ID
+                && getHeaderId(itemAdapterPosition - 1) != UNKNOWN_HEADER_ID;
     }
 
     /**
@@ -88,129 +212,536 @@ private boolean showHeaderAboveItem(int itemAdapterPosition) {
      */
     public void clearHeaderCache() {
         headerCache.clear();
+
+        if (prefetcher != null) {
+            prefetcher.cancel();
+        }
     }
 
-    @Nullable
-    public View findHeaderViewUnder(float x, float y) {
-        for (RecyclerView.ViewHolder holder : headerCache.values()) {
-            final View child = holder.itemView;
-            final float translationX = ViewCompat.getTranslationX(child);
-            final float translationY = ViewCompat.getTranslationY(child);
-
-            if (x >= child.getLeft() + translationX &&
-                    x <= child.getRight() + translationX &&
-                    y >= child.getTop() + translationY &&
-                    y <= child.getBottom() + translationY) {
-                return child;
+    /**
+     * Sets the maximum number of headers kept in the cache. The least recently drawn header is
+     * evicted when the cache is full.
+     *
+     * @param size the maximum cache size, or {@link HeaderCache#AUTO_SIZE} to size the cache from
+     * the number of visible children
+     */
+    public void setHeaderCacheSize(int size) {
+        headerCache.setMaxSize(size);
+    }
+
+    /**
+     * @return the header view cache, for reading its size and hit, miss and eviction counts
+     */
+    @NonNull
+    public HeaderCache getHeaderCache() {
+        return headerCache;
+    }
+
+    /**
+     * Enables or disables the section index. When enabled, section boundaries and header ids are
+     * looked up in an index that is built once and then updated from the RecyclerView adapter's
+     * change notifications, instead of being requested from the adapter on every frame.
+     * <p>
+     * The adapter must report every data change through the {@code notify*} methods for the index
+     * to stay accurate.
+     *
+     * @param enabled whether to use a section index
+     */
+    public void setSectionIndexEnabled(boolean enabled) {
+        if (enabled && sectionIndex == null) {
+            sectionIndex = new SectionIndex() {
+                @Override
+                long getHeaderId(int position) {
+                    return adapter.getHeaderId(position);
+                }
+            };
+            observers.add(sectionIndex);
+        } else if (!enabled && sectionIndex != null) {
+            observers.remove(sectionIndex);
+            sectionIndex = null;
+        }
+    }
+
+    /**
+     * Enables or disables snapshot rendering. When enabled, each header is recorded once after it
+     * is bound and measured, and later frames replay the recording with a single draw call
+     * instead of walking the header's view tree.
+     * <p>
+     * Changes made to a cached header view outside of binding, such as an image that finishes
+     * loading later, are not picked up until the header cache is cleared.
+     *
+     * @param enabled whether to draw headers from recorded snapshots
+     */
+    public void setSnapshotRenderingEnabled(boolean enabled) {
+        renderSnapshots = enabled;
+    }
+
+    /**
+     * Enables or disables background header creation. When an executor is set, the headers of
+     * the sections just outside the visible range are created on it ahead of time, then bound on
+     * the main thread, so they are already cached when they scroll in. Headers needed before
+     * their background work completes are still created on the main thread.
+     * <p>
+     * The adapter's {@code onCreateHeaderViewHolder} must be safe to call from the executor's
+     * threads when this is enabled. Headers are always bound on the main thread.
+     *
+     * @param executor the executor to create headers on, or null to create them synchronously
+     */
+    public void setAsyncHeaderExecutor(@Nullable Executor executor) {
+        if (prefetcher != null) {
+            prefetcher.cancel();
+            prefetcher = null;
+        }
+
+        if (executor != null) {
+            prefetcher = new HeaderPrefetcher(headerCache, executor) {
+                @Override
+                long getHeaderId(int position) {
+                    return StickyHeaderDecoration.this.getHeaderId(position);
+                }
+
+                @Override
+                boolean hasHeader(long id) {
+                    return id != NO_HEADER_ID && id != UNKNOWN_HEADER_ID;
+                }
+
+                @Override
+                int getHeaderViewType(int position) {
+                    return StickyHeaderDecoration.this.getHeaderViewType(position);
+                }
+
+                @NonNull
+                @Override
+                RecyclerView.ViewHolder createHeader(@NonNull ViewGroup parent, int viewType) {
+                    return createHeaderHolder(parent, viewType);
+                }
+
+                @Override
+                void bindHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+                        int position) {
+                    //noinspection unchecked
+                    adapter.onBindHeaderViewHolder(entry.holder, position);
+
+                    if (metrics != null) {
+                        metrics.onHeaderCreated();
+                        metrics.onHeaderBound();
+                    }
+
+                    measureHeader(parent, entry);
+                }
+            };
+        }
+    }
+
+    /**
+     * Rebinds the cached header with the given id the next time it is drawn, leaving every other
+     * cached header as it is. Nothing happens if the header isn't cached, as it will be bound
+     * when it is created.
+     *
+     * @param headerId the id of the header that changed
+     */
+    public void notifyHeaderChanged(long headerId) {
+        notifyHeaderChanged(headerId, null);
+    }
+
+    /**
+     * Rebinds the cached header with the given id the next time it is drawn, passing the payload
+     * to
+     * {@link StickyHeaderPayloadBinder#onBindHeaderViewHolder(RecyclerView.ViewHolder, int, List)}
+     * so only the changed part of the header has to be updated. Nothing happens if the header
+     * isn't cached, as it will be bound when it is created.
+     *
+     * @param headerId the id of the header that changed
+     * @param payload the partial update, or null for a full rebind
+     */
+    public void notifyHeaderChanged(long headerId, @Nullable Object payload) {
+        if (headerCache.markChanged(headerId, payload) && recyclerView != null) {
+            recyclerView.invalidate();
+        }
+    }
+
+    /**
+     * Sets the callback that decides which cached headers to rebind when the adapter's items
+     * change. While set, the decoration follows the adapter's change notifications, such as the
+     * ones dispatched by {@code DiffUtil} or {@code ListAdapter}, and only the cached headers of
+     * the sections whose items changed are passed to the callback, instead of the whole header
+     * cache having to be cleared.
+     *
+     * @param callback the callback, or null to stop following the adapter's changes
+     */
+    public void setHeaderDiffCallback(@Nullable final HeaderDiffCallback callback) {
+        if (updateTracker != null) {
+            observers.remove(updateTracker);
+            updateTracker = null;
+        }
+
+        if (callback != null) {
+            updateTracker = new HeaderUpdateTracker() {
+                @Override
+                long getHeaderId(int position) {
+                    return StickyHeaderDecoration.this.getHeaderId(position);
+                }
+
+                @Override
+                void onHeaderChanged(long headerId) {
+                    if (headerId != NO_HEADER_ID && headerId != UNKNOWN_HEADER_ID
+                            && headerCache.contains(headerId)
+                            && !callback.areHeaderContentsTheSame(headerId)) {
+                        headerCache.markChanged(headerId,
+                                callback.getHeaderChangePayload(headerId));
+                    }
+                }
+
+                @Override
+                void onAllHeadersChanged() {
+                    headerCache.markAllChanged();
+                }
+            };
+
+            observers.add(updateTracker);
+
+            if (recyclerView != null) {
+                updateTracker.attach(recyclerView.getAdapter());
             }
         }
+    }
 
-        return null;
+    /**
+     * Starts or stops collecting metrics. While a listener is set, the decoration counts header
+     * creates, binds, measures and cache lookups, and times its {@code getItemOffsets} and
+     * {@code onDrawOver} calls, reporting to the listener after every frame.
+     *
+     * @param listener the listener to report to, or null to stop collecting metrics
+     */
+    public void setMetricsListener(@Nullable DecorationMetrics.Listener listener) {
+        metrics = listener != null ? new DecorationMetrics(listener, headerCache) : null;
+    }
+
+    /**
+     * Stops observing the RecyclerView adapter. Call this after removing the decoration from its
+     * RecyclerView, which the decoration isn't told about; it is done automatically when the
+     * RecyclerView is detached from its window. The decoration observes the adapter again the next
+     * time it is used.
+     */
+    public void detach() {
+        observers.detach();
+    }
+
+    private void prepare(@NonNull RecyclerView parent) {
+        recyclerView = parent;
+        observers.watch(parent);
+        headerCache.ensureAutoSize(parent.getChildCount());
+
+        if (sections != null) {
+            sections.attach(parent.getAdapter());
+            sections.update();
+
+            if (sections.takeChange()) {
+                // the header ids are section numbers, which now belong to other sections
+                headerCache.markAllChanged();
+            }
+        }
+
+        if (sectionIndex != null) {
+            sectionIndex.attach(parent.getAdapter());
+        }
+
+        if (updateTracker != null) {
+            updateTracker.attach(parent.getAdapter());
+            updateTracker.apply();
+        }
+    }
+
+    /**
+     * Finds the header drawn under the given point in the last frame.
+     *
+     * @param x the horizontal position, relative to the RecyclerView
+     * @param y the vertical position, relative to the RecyclerView
+     * @return the header view, or null if no header was drawn there
+     */
+    @Nullable
+    public View findHeaderViewUnder(float x, float y) {
+        return frame.findHeaderUnder(0, x, y);
     }
 
     private boolean hasHeader(int position) {
-        return adapter.getHeaderId(position) != NO_HEADER_ID;
+        final long id = getHeaderId(position);
+        return id != NO_HEADER_ID && id != UNKNOWN_HEADER_ID;
+    }
+
+    private long getHeaderId(int position) {
+        final long id;
+
+        if (sectionIndex != null && sectionIndex.isAttached()) {
+            id = sectionIndex.headerIdAt(position);
+        } else if (headerIds.contains(position)) {
+            id = headerIds.get(0, position);
+        } else {
+            id = adapter.getHeaderId(position);
+        }
+
+        if (id == UNKNOWN_HEADER_ID) {
+            if (placeholderWatcher == null) {
+                placeholderWatcher = new PlaceholderWatcher();
+                observers.add(placeholderWatcher);
+            }
+            placeholderWatcher.onUnknownHeaderId(recyclerView);
+        }
+
+        return id;
     }
 
     @NonNull
-    private RecyclerView.ViewHolder getHeader(@NonNull RecyclerView parent, int position) {
-        final long key = adapter.getHeaderId(position);
+    private HeaderCache.Entry getHeader(@NonNull RecyclerView parent, int position) {
+        final long key = getHeaderId(position);
+
+        final HeaderCache.Entry cached = headerCache.get(key);
 
-        if (headerCache.containsKey(key)) {
-            return headerCache.get(key);
+        if (cached != null) {
+            if (cached.needsBind) {
+                rebindHeader(parent, cached, position);
+            } else if (cached.measuredWidth != parent.getMeasuredWidth()) {
+                remeasureHeader(parent, cached);
+            }
+
+            return cached;
         } else {
-            final RecyclerView.ViewHolder holder = adapter.onCreateHeaderViewHolder(parent);
-            final View header = holder.itemView;
+            final int viewType = getHeaderViewType(position);
+            HeaderCache.Entry entry = headerCache.acquire(viewType);
+
+            if (entry == null) {
+                entry = new HeaderCache.Entry(createHeaderHolder(parent, viewType), viewType);
+
+                if (metrics != null) {
+                    metrics.onHeaderCreated();
+                }
+            }
+
+            //noinspection unchecked
+            adapter.onBindHeaderViewHolder(entry.holder, position);
+
+            if (metrics != null) {
+                metrics.onHeaderBound();
+            }
+
+            measureHeader(parent, entry);
+
+            return headerCache.put(key, entry);
+        }
+    }
+
+    private int getHeaderViewType(int position) {
+        return adapter instanceof HeaderViewTypeProvider
+                ? ((HeaderViewTypeProvider) adapter).getHeaderViewType(position) : 0;
+    }
+
+    @NonNull
+    private RecyclerView.ViewHolder createHeaderHolder(@NonNull ViewGroup parent, int viewType) {
+        if (adapter instanceof HeaderViewTypeProvider) {
+            return ((HeaderViewTypeProvider) adapter).onCreateHeaderViewHolder(parent, viewType);
+        }
+
+        return adapter.onCreateHeaderViewHolder(parent);
+    }
+
+    private void rebindHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+            int position) {
 
+        if (adapter instanceof StickyHeaderPayloadBinder) {
+            //noinspection unchecked
+            ((StickyHeaderPayloadBinder) adapter).onBindHeaderViewHolder(entry.holder, position,
+                    entry.getPayloads());
+        } else {
             //noinspection unchecked
-            adapter.onBindHeaderViewHolder(holder, position);
+            adapter.onBindHeaderViewHolder(entry.holder, position);
+        }
+
+        entry.onBound();
 
-            int widthSpec = View.MeasureSpec.makeMeasureSpec(parent.getMeasuredWidth(),
-                    View.MeasureSpec.EXACTLY);
-            int heightSpec = View.MeasureSpec.makeMeasureSpec(parent.getMeasuredHeight(),
-                    View.MeasureSpec.UNSPECIFIED);
+        if (metrics != null) {
+            metrics.onHeaderBound();
+        }
 
-            int childWidth = ViewGroup.getChildMeasureSpec(widthSpec,
-                    parent.getPaddingLeft() + parent.getPaddingRight(),
-                    header.getLayoutParams().width);
-            int childHeight = ViewGroup.getChildMeasureSpec(heightSpec,
-                    parent.getPaddingTop() + parent.getPaddingBottom(),
-                    header.getLayoutParams().height);
+        remeasureHeader(parent, entry);
+    }
 
-            header.measure(childWidth, childHeight);
-            header.layout(0, 0, header.getMeasuredWidth(), header.getMeasuredHeight());
+    /**
+     * Measures a cached header again, after it was rebound or the RecyclerView's width changed,
+     * keeping its bound holder.
+     */
+    private void remeasureHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry) {
+        final int height = entry.holder.itemView.getHeight();
 
-            headerCache.put(key, holder);
+        measureHeader(parent, entry);
+        entry.invalidateSnapshot();
 
-            return holder;
+        if (entry.holder.itemView.getHeight() != height) {
+            // the item offsets depend on the header height, which may be
+            // measured in the middle of a layout or scroll
+            invalidator.invalidate(parent);
         }
     }
 
+    private void measureHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry) {
+        final View header = entry.holder.itemView;
+        entry.measuredWidth = parent.getMeasuredWidth();
+
+        if (metrics != null) {
+            metrics.onHeaderMeasured();
+        }
+
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(entry.measuredWidth,
+                View.MeasureSpec.EXACTLY);
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(parent.getMeasuredHeight(),
+                View.MeasureSpec.UNSPECIFIED);
+
+        int childWidth = ViewGroup.getChildMeasureSpec(widthSpec,
+                parent.getPaddingLeft() + parent.getPaddingRight(),
+                header.getLayoutParams().width);
+        int childHeight = ViewGroup.getChildMeasureSpec(heightSpec,
+                parent.getPaddingTop() + parent.getPaddingBottom(),
+                header.getLayoutParams().height);
+
+        header.measure(childWidth, childHeight);
+        header.layout(0, 0, header.getMeasuredWidth(), header.getMeasuredHeight());
+        maxHeaderHeight = Math.max(maxHeaderHeight, header.getMeasuredHeight());
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent,
             @NonNull RecyclerView.State state) {
+        draw(canvas, parent, null);
+    }
+
+    /**
+     * Draws the headers, reading the children from the given snapshot if it was already taken
+     * for this frame, or from a snapshot of the decoration's own otherwise.
+     */
+    private void draw(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @Nullable ChildSnapshot children) {
+
+        if (metrics == null) {
+            drawHeaders(canvas, parent, children);
+            return;
+        }
 
-        final int count = parent.getChildCount();
+        final long start = System.nanoTime();
+        drawHeaders(canvas, parent, children);
+        metrics.onFrameDrawn(System.nanoTime() - start, frame.drawnCount());
+    }
+
+    private void drawHeaders(@NonNull Canvas canvas, @NonNull RecyclerView parent,
+            @Nullable ChildSnapshot children) {
         long previousHeaderId = -1;
 
+        prepare(parent);
+
+        if (frame.isUnchanged(parent, canvas, headerCache.version(), children)) {
+            frame.draw(canvas, renderSnapshots);
+            return;
+        }
+
+        headerCache.beginFrame();
+
+        if (sectionIndex == null || !sectionIndex.isAttached()) {
+            headerIds.open(frame);
+        }
+
+        // the header pinned to the top, until the first child of the next section is found
+        int pinned = -1;
+        long pinnedId = NO_HEADER_ID;
+        int pinnedHeight = 0;
+        final int count = frame.childCount();
+
         for (int layoutPos = 0; layoutPos < count; layoutPos++) {
-            final View child = parent.getChildAt(layoutPos);
-            final int adapterPos = parent.getChildAdapterPosition(child);
+            final View child = frame.child(layoutPos);
+            final int adapterPos = frame.childPosition(layoutPos);
+
+            if (adapterPos == RecyclerView.NO_POSITION) {
+                continue;
+            }
+
+            final long headerId = getHeaderId(adapterPos);
+            HeaderCache.Entry entry = null;
+
+            if (headerId == UNKNOWN_HEADER_ID) {
+                // an unloaded item may or may not start a section, so neither it nor the item
+                // after it gets a header until it loads
+                previousHeaderId = UNKNOWN_HEADER_ID;
+                continue;
+            }
+
+            if (previousHeaderId == UNKNOWN_HEADER_ID && layoutPos > 0) {
+                previousHeaderId = headerId;
+            } else if (headerId != NO_HEADER_ID && headerId != previousHeaderId) {
+                previousHeaderId = headerId;
+                final boolean pushesPinned = pinned != -1 && headerId != pinnedId;
 
-            if (adapterPos != RecyclerView.NO_POSITION && hasHeader(adapterPos)) {
-                long headerId = adapter.getHeaderId(adapterPos);
+                if (layoutPos > 0 && !pushesPinned && isHeaderClipped((int) child.getY())) {
+                    placeClippedHeader(child, headerId);
+                    continue;
+                }
 
-                if (headerId != previousHeaderId) {
-                    previousHeaderId = headerId;
-                    View header = getHeader(parent, adapterPos).itemView;
-                    canvas.save();
+                entry = getHeader(parent, adapterPos);
 
-                    final int left = child.getLeft();
-                    final int top = getHeaderTop(parent, child, header, adapterPos, layoutPos);
-                    canvas.translate(left, top);
+                final int headerHeight = getHeaderHeightForLayout(entry.holder.itemView);
+                final int top = ((int) child.getY()) - headerHeight;
 
-                    header.setTranslationX(left);
-                    header.setTranslationY(top);
-                    header.draw(canvas);
-                    canvas.restore();
+                if (layoutPos == 0) {
+                    pinned = frame.add(entry, 0, child.getLeft(), Math.max(0, top));
+                    pinnedId = headerId;
+                    pinnedHeight = headerHeight;
+                    continue;
                 }
+
+                frame.add(entry, 0, child.getLeft(), top);
             }
-        }
-    }
 
-    private int getHeaderTop(@NonNull RecyclerView parent, @NonNull View child,
-            @NonNull View header, int adapterPos, int layoutPos) {
-
-        int headerHeight = getHeaderHeightForLayout(header);
-        int top = ((int) child.getY()) - headerHeight;
-        if (layoutPos == 0) {
-            final int count = parent.getChildCount();
-            final long currentId = adapter.getHeaderId(adapterPos);
-            // find next view with header and compute the offscreen push if needed
-            for (int i = 1; i < count; i++) {
-                int adapterPosHere = parent.getChildAdapterPosition(parent.getChildAt(i));
-                if (adapterPosHere != RecyclerView.NO_POSITION) {
-                    long nextId = adapter.getHeaderId(adapterPosHere);
-                    if (nextId != currentId) {
-                        final View next = parent.getChildAt(i);
-                        final int offset = ((int) next.getY()) - (headerHeight +
-                                getHeader(parent, adapterPosHere).itemView.getHeight());
-                        if (offset < 0) {
-                            return offset;
-                        } else {
-                            break;
-                        }
-                    }
+            if (pinned != -1 && headerId != pinnedId) {
+                // the next section's header pushes the pinned one up once they overlap
+                final int nextHeight = entry != null ? entry.holder.itemView.getHeight() : 0;
+                final int offset = ((int) child.getY()) - (pinnedHeight + nextHeight);
+
+                if (offset < 0) {
+                    frame.setTop(pinned, offset);
                 }
+
+                pinned = -1;
             }
+        }
+
+        headerIds.close();
+        frame.commit(headerCache.version());
+        frame.draw(canvas, renderSnapshots);
 
-            top = Math.max(0, top);
+        if (prefetcher != null) {
+            prefetcher.prefetch(parent);
         }
+    }
 
-        return top;
+    /**
+     * @return whether the header above a child at the given top would be outside the clip, even
+     * if it were as tall as the tallest header measured so far
+     */
+    private boolean isHeaderClipped(int childTop) {
+        final int top = renderInline ? childTop : childTop - maxHeaderHeight;
+        return frame.isClipped(top, top + maxHeaderHeight);
+    }
+
+    /**
+     * Places a header outside the clip only if it is already cached, without rebinding or
+     * measuring it, so it can still be hit tested. It is skipped when the frame is drawn.
+     */
+    private void placeClippedHeader(@NonNull View child, long headerId) {
+        final HeaderCache.Entry cached = headerCache.get(headerId);
+
+        if (cached != null) {
+            final int headerHeight = getHeaderHeightForLayout(cached.holder.itemView);
+            frame.add(cached, 0, child.getLeft(), ((int) child.getY()) - headerHeight);
+        }
     }
 
     private int getHeaderHeightForLayout(@NonNull View header) {
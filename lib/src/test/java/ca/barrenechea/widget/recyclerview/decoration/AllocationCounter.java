@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes allocated by the current thread, using the HotSpot thread MX bean.
+ */
+final class AllocationCounter {
+    private final com.sun.management.ThreadMXBean bean;
+    private final long threadId;
+    private final long overhead;
+
+    private long start;
+
+    AllocationCounter() {
+        this.bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threadId = Thread.currentThread().getId();
+
+        // reading the counter can itself allocate, measure an empty interval to discount it
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            start();
+            min = Math.min(min, bean.getThreadAllocatedBytes(threadId) - start);
+        }
+        this.overhead = min;
+    }
+
+    void start() {
+        start = bean.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * @return the bytes allocated since {@link #start()} was called
+     */
+    long stop() {
+        return Math.max(0, bean.getThreadAllocatedBytes(threadId) - start - overhead);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class CompositeDecorationTest {
+    private SyntheticAdapter adapter;
+    private CountingRecyclerView recyclerView;
+    private DividerDecoration divider;
+    private StickyHeaderDecoration sticky;
+    private DoubleHeaderDecoration doubleHeaders;
+    private CompositeDecoration composite;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+
+        adapter = new SyntheticAdapter(1000, 3);
+        divider = new DividerDecoration.Builder(context).build();
+        sticky = new StickyHeaderDecoration(adapter);
+        doubleHeaders = new DoubleHeaderDecoration(adapter);
+        composite = new CompositeDecoration.Builder()
+                .add(divider)
+                .add(sticky)
+                .add(doubleHeaders)
+                .build();
+
+        recyclerView = new CountingRecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setAdapter(adapter);
+        recyclerView.addItemDecoration(composite);
+
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(ScrollSimulator.WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(ScrollSimulator.HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, ScrollSimulator.WIDTH, ScrollSimulator.HEIGHT);
+    }
+
+    @Test
+    public void childrenAreWalkedOncePerFrame() {
+        final Canvas canvas = new Canvas();
+        final RecyclerView.State state = new RecyclerView.State();
+
+        recyclerView.positionLookups = 0;
+        composite.onDrawOver(canvas, recyclerView, state);
+
+        assertEquals(recyclerView.getChildCount(), recyclerView.positionLookups);
+
+        // both header layers placed the headers of the first child from the shared snapshot
+        final float x = ScrollSimulator.WIDTH / 2f;
+        final float y = recyclerView.getChildAt(0).getY() - 1;
+        assertNotNull(sticky.findHeaderViewUnder(x, y));
+        assertNotNull(doubleHeaders.findSubHeaderViewUnder(x, y));
+    }
+
+    @Test
+    public void layersStillWorkOnTheirOwn() {
+        final Canvas canvas = new Canvas();
+        final RecyclerView.State state = new RecyclerView.State();
+
+        composite.onDrawOver(canvas, recyclerView, state);
+
+        // drawn directly, the decoration takes its own snapshot rather than the composite's
+        recyclerView.positionLookups = 0;
+        sticky.onDrawOver(canvas, recyclerView, state);
+
+        assertEquals(recyclerView.getChildCount(), recyclerView.positionLookups);
+
+        final float x = ScrollSimulator.WIDTH / 2f;
+        final float y = recyclerView.getChildAt(0).getY() - 1;
+        assertNotNull(sticky.findHeaderViewUnder(x, y));
+
+        // and the composite switches back to its snapshot on the next frame
+        recyclerView.positionLookups = 0;
+        composite.onDrawOver(canvas, recyclerView, state);
+
+        assertEquals(recyclerView.getChildCount(), recyclerView.positionLookups);
+        assertNotNull(sticky.findHeaderViewUnder(x, y));
+    }
+
+    @Test
+    public void offsetsAddUpTheLayers() {
+        final RecyclerView.State state = new RecyclerView.State();
+        final Rect expected = new Rect();
+        final Rect layer = new Rect();
+        final Rect actual = new Rect();
+
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            final View child = recyclerView.getChildAt(i);
+            expected.setEmpty();
+
+            divider.getItemOffsets(layer, child, recyclerView, state);
+            add(expected, layer);
+            sticky.getItemOffsets(layer, child, recyclerView, state);
+            add(expected, layer);
+            doubleHeaders.getItemOffsets(layer, child, recyclerView, state);
+            add(expected, layer);
+
+            recyclerView.positionLookups = 0;
+            composite.getItemOffsets(actual, child, recyclerView, state);
+
+            assertEquals(expected, actual);
+            assertEquals(1, recyclerView.positionLookups);
+        }
+    }
+
+    private static void add(@NonNull Rect sum, @NonNull Rect rect) {
+        sum.left += rect.left;
+        sum.top += rect.top;
+        sum.right += rect.right;
+        sum.bottom += rect.bottom;
+    }
+
+    /**
+     * A RecyclerView that counts the adapter position lookups of its children.
+     */
+    private static final class CountingRecyclerView extends RecyclerView {
+        int positionLookups;
+
+        CountingRecyclerView(@NonNull Context context) {
+            super(context);
+        }
+
+        @Override
+        public int getChildAdapterPosition(@NonNull View child) {
+            positionLookups++;
+            return super.getChildAdapterPosition(child);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that once the header caches are warm, the decoration callbacks made on every frame,
+ * and touch hit testing, don't allocate.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DecorationAllocationTest {
+    private static final int ITEM_COUNT = 1_000_000;
+    private static final int SECTION_SIZE = 3;
+    private static final int FRAMES = 1000;
+    private static final int STEP = 7;
+
+    private SyntheticAdapter adapter;
+    private RecyclerView recyclerView;
+    private RecyclerView.State state;
+    private Canvas canvas;
+    private Rect outRect;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+
+        adapter = new SyntheticAdapter(ITEM_COUNT, SECTION_SIZE);
+        state = new RecyclerView.State();
+        canvas = new Canvas();
+        outRect = new Rect();
+
+        recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+
+        layoutManager.scrollToPositionWithOffset(ITEM_COUNT / 2, 0);
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(ScrollSimulator.WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(ScrollSimulator.HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, ScrollSimulator.WIDTH, ScrollSimulator.HEIGHT);
+    }
+
+    @Test
+    public void stickyHeaderScrollDoesNotAllocate() {
+        assertEquals(0, measureScroll(new StickyHeaderDecoration(adapter)));
+    }
+
+    @Test
+    public void inlineStickyHeaderScrollDoesNotAllocate() {
+        assertEquals(0, measureScroll(new StickyHeaderDecoration(adapter, true)));
+    }
+
+    @Test
+    public void doubleHeaderScrollDoesNotAllocate() {
+        assertEquals(0, measureScroll(new DoubleHeaderDecoration(adapter)));
+    }
+
+    @Test
+    public void inlineDoubleHeaderScrollDoesNotAllocate() {
+        assertEquals(0, measureScroll(new DoubleHeaderDecoration(adapter, true)));
+    }
+
+    @Test
+    public void dividerScrollDoesNotAllocate() {
+        final DividerDecoration decoration =
+                new DividerDecoration.Builder(RuntimeEnvironment.application).build();
+
+        assertEquals(0, measureScroll(decoration));
+    }
+
+    @Test
+    public void stickyHeaderHitTestingDoesNotAllocate() {
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        final AllocationCounter counter = new AllocationCounter();
+
+        measureScroll(decoration);
+
+        counter.start();
+        for (int y = 0; y < ScrollSimulator.HEIGHT; y++) {
+            decoration.findHeaderViewUnder(ScrollSimulator.WIDTH / 2f, y);
+        }
+        assertEquals(0, counter.stop());
+    }
+
+    @Test
+    public void doubleHeaderHitTestingDoesNotAllocate() {
+        final DoubleHeaderDecoration decoration = new DoubleHeaderDecoration(adapter);
+        final AllocationCounter counter = new AllocationCounter();
+
+        measureScroll(decoration);
+
+        counter.start();
+        for (int y = 0; y < ScrollSimulator.HEIGHT; y++) {
+            decoration.findHeaderViewUnder(ScrollSimulator.WIDTH / 2f, y);
+            decoration.findSubHeaderViewUnder(ScrollSimulator.WIDTH / 2f, y);
+        }
+        assertEquals(0, counter.stop());
+    }
+
+    /**
+     * Scrolls down and back up over a long range twice, once to warm the header caches and once
+     * while counting the bytes allocated by the decoration. The range covers more sections than
+     * the subheader cache holds, so evicted headers are also rebound from the pool.
+     */
+    private long measureScroll(@NonNull RecyclerView.ItemDecoration decoration) {
+        final AllocationCounter counter = new AllocationCounter();
+
+        recyclerView.addItemDecoration(decoration);
+        scroll(decoration, null);
+        return scroll(decoration, counter);
+    }
+
+    private long scroll(@NonNull RecyclerView.ItemDecoration decoration,
+            AllocationCounter counter) {
+
+        long allocated = 0;
+
+        for (int frame = 0; frame < FRAMES * 2; frame++) {
+            recyclerView.scrollBy(0, frame < FRAMES ? STEP : -STEP);
+
+            if (counter != null) {
+                counter.start();
+            }
+
+            drawFrame(decoration);
+
+            if (counter != null) {
+                allocated += counter.stop();
+            }
+        }
+
+        return allocated;
+    }
+
+    private void drawFrame(@NonNull RecyclerView.ItemDecoration decoration) {
+        final int count = recyclerView.getChildCount();
+
+        for (int i = 0; i < count; i++) {
+            decoration.getItemOffsets(outRect, recyclerView.getChildAt(i), recyclerView, state);
+        }
+
+        decoration.onDrawOver(canvas, recyclerView, state);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class DividerDecorationTest {
+    private static final int SPAN_COUNT = 3;
+    private static final int DIVIDER_HEIGHT = 8;
+
+    @Test
+    public void gridDividersAreDrawnInOneBatch() {
+        final RecyclerView recyclerView = createGrid(true);
+        final LineCountingCanvas canvas = new LineCountingCanvas();
+
+        recyclerView.getItemDecorationAt(0)
+                .onDrawOver(canvas, recyclerView, new RecyclerView.State());
+
+        assertEquals(1, canvas.batches);
+        assertEquals(countVisibleDividers(recyclerView, true), canvas.lines);
+    }
+
+    @Test
+    public void columnDividersAreOptional() {
+        final RecyclerView recyclerView = createGrid(false);
+        final LineCountingCanvas canvas = new LineCountingCanvas();
+
+        recyclerView.getItemDecorationAt(0)
+                .onDrawOver(canvas, recyclerView, new RecyclerView.State());
+
+        assertEquals(1, canvas.batches);
+        assertEquals(countVisibleDividers(recyclerView, false), canvas.lines);
+    }
+
+    @Test
+    public void metricsCountTheDividersDrawn() {
+        final RecyclerView recyclerView = createGrid(true);
+        final DividerDecoration decoration =
+                (DividerDecoration) recyclerView.getItemDecorationAt(0);
+        final DecorationMetrics[] reported = new DecorationMetrics[1];
+        final LineCountingCanvas canvas = new LineCountingCanvas();
+
+        decoration.setMetricsListener(new DecorationMetrics.Listener() {
+            @Override
+            public void onFrameDrawn(@NonNull DecorationMetrics metrics) {
+                reported[0] = metrics;
+            }
+        });
+        decoration.onDrawOver(canvas, recyclerView, new RecyclerView.State());
+
+        assertEquals(1, reported[0].drawnPerFrame().count());
+        assertEquals(canvas.lines, reported[0].drawnPerFrame().sum());
+        assertEquals(0, reported[0].cacheHits());
+    }
+
+    @Test
+    public void gridCellsKeepEqualWidths() {
+        final RecyclerView recyclerView = createGrid(true);
+        final int width = recyclerView.getChildAt(0).getWidth();
+
+        for (int i = 1; i < SPAN_COUNT; i++) {
+            final View child = recyclerView.getChildAt(i);
+            final View previous = recyclerView.getChildAt(i - 1);
+
+            assertEquals(width, child.getWidth(), 1);
+            assertEquals(DIVIDER_HEIGHT, child.getLeft() - previous.getRight());
+        }
+    }
+
+    /**
+     * Counts the row dividers below the children, and the column dividers right of the children
+     * that don't end their row, that start above the bottom of the RecyclerView.
+     */
+    private static int countVisibleDividers(@NonNull RecyclerView recyclerView,
+            boolean gridDividers) {
+        int count = 0;
+
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            final View child = recyclerView.getChildAt(i);
+            final GridLayoutManager.LayoutParams params =
+                    (GridLayoutManager.LayoutParams) child.getLayoutParams();
+
+            if (child.getBottom() < ScrollSimulator.HEIGHT) {
+                count++;
+            }
+
+            if (gridDividers && child.getTop() < ScrollSimulator.HEIGHT
+                    && params.getSpanIndex() + params.getSpanSize() < SPAN_COUNT) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @NonNull
+    private static RecyclerView createGrid(boolean gridDividers) {
+        final Context context = RuntimeEnvironment.application;
+        final RecyclerView recyclerView = new RecyclerView(context);
+
+        recyclerView.setLayoutManager(new GridLayoutManager(context, SPAN_COUNT));
+        recyclerView.setAdapter(new SyntheticAdapter(1000, 1));
+        recyclerView.addItemDecoration(new DividerDecoration.Builder(context)
+                .setHeight((float) DIVIDER_HEIGHT)
+                .setGridDividers(gridDividers)
+                .build());
+
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(ScrollSimulator.WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(ScrollSimulator.HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, ScrollSimulator.WIDTH, ScrollSimulator.HEIGHT);
+        return recyclerView;
+    }
+
+    /**
+     * A canvas that counts the lines drawn, and the calls they were drawn in.
+     */
+    private static final class LineCountingCanvas extends Canvas {
+        int batches;
+        int lines;
+
+        @Override
+        public void drawLines(@NonNull float[] pts, int offset, int count, @NonNull Paint paint) {
+            batches++;
+            lines += count / 4;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeaderCacheTest {
+    private HeaderCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new HeaderCache();
+        cache.setMaxSize(3);
+    }
+
+    @Test
+    public void leastRecentlyUsedHeaderIsEvicted() {
+        put(1);
+        put(2);
+        put(3);
+        put(4);
+
+        assertFalse(cache.contains(1));
+        assertTrue(cache.contains(2));
+        assertTrue(cache.contains(3));
+        assertTrue(cache.contains(4));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void lookupsRefreshTheEvictionOrder() {
+        put(1);
+        put(2);
+        put(3);
+
+        // 1 becomes the most recently used, so 2 is the oldest
+        assertNotNull(cache.get(1));
+        put(4);
+
+        assertTrue(cache.contains(1));
+        assertFalse(cache.contains(2));
+
+        // contains doesn't refresh an entry
+        assertTrue(cache.contains(3));
+        put(5);
+
+        assertFalse(cache.contains(3));
+        assertTrue(cache.contains(1));
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void shrinkingEvictsTheOldestHeaders() {
+        put(1);
+        put(2);
+        put(3);
+        cache.get(1);
+
+        cache.setMaxSize(1);
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains(1));
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void decorationCacheSizeShrinksTheCache() {
+        final StickyHeaderDecoration decoration =
+                new StickyHeaderDecoration(new SyntheticAdapter(100, 1));
+        final HeaderCache headerCache = decoration.getHeaderCache();
+
+        for (int i = 0; i < 5; i++) {
+            headerCache.put(i, newEntry());
+        }
+
+        decoration.setHeaderCacheSize(2);
+
+        assertEquals(2, headerCache.maxSize());
+        assertEquals(2, headerCache.size());
+        assertTrue(headerCache.contains(3));
+        assertTrue(headerCache.contains(4));
+        assertEquals(3, headerCache.evictionCount());
+    }
+
+    @Test
+    public void evictedEntriesArePooledForReuse() {
+        final HeaderCache.Entry first = put(1);
+        put(2);
+        put(3);
+
+        // entries used in the frame being drawn are never pooled
+        cache.beginFrame();
+        put(4);
+
+        assertSame(first, cache.acquire(0));
+        assertNull(cache.acquire(0));
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted() {
+        put(1);
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertTrue(cache.contains(1));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @NonNull
+    private HeaderCache.Entry put(long id) {
+        return cache.put(id, newEntry());
+    }
+
+    @NonNull
+    private static HeaderCache.Entry newEntry() {
+        return new HeaderCache.Entry(
+                new SyntheticAdapter.Holder(new View(RuntimeEnvironment.application)), 0);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeaderFrameTest {
+    private static final Rect CLIP = new Rect(0, 0, ScrollSimulator.WIDTH, ScrollSimulator.HEIGHT);
+
+    private SyntheticAdapter adapter;
+    private StickyHeaderDecoration decoration;
+    private ScrollSimulator simulator;
+    private RecyclerView recyclerView;
+    private ScrollSimulator.RecordingCanvas canvas;
+    private HeaderFrame frame;
+
+    @Before
+    public void setUp() {
+        adapter = new SyntheticAdapter(1_000, 5);
+        decoration = new StickyHeaderDecoration(adapter);
+        simulator = new ScrollSimulator(adapter, decoration);
+        simulator.scrollToPosition(100);
+        recyclerView = simulator.recyclerView();
+
+        canvas = new ScrollSimulator.RecordingCanvas();
+        canvas.clip = new Rect(CLIP);
+        frame = new HeaderFrame();
+
+        place(0);
+    }
+
+    @Test
+    public void unchangedFramesKeepTheirPlacements() {
+        assertTrue(frame.isUnchanged(recyclerView, canvas, 0, null));
+        assertEquals(1, frame.size());
+        assertTrue(frame.isUnchanged(recyclerView, canvas, 0, null));
+        assertEquals(1, frame.size());
+    }
+
+    @Test
+    public void uncommittedPlacementsAreNotReused() {
+        frame.invalidate();
+        assertFalse(frame.isUnchanged(recyclerView, canvas, 0, null));
+        frame.add(newEntry(), 0, 0, 0);
+
+        assertFalse(frame.isUnchanged(recyclerView, canvas, 0, null));
+        assertEquals(0, frame.size());
+    }
+
+    @Test
+    public void changedClipsForceNewPlacements() {
+        canvas.clip = new Rect(0, 0, ScrollSimulator.WIDTH, ScrollSimulator.HEIGHT / 2);
+        assertChanged(0);
+
+        // a canvas that reports no clip differs from one that does
+        canvas.clip = null;
+        assertChanged(0);
+
+        canvas.clip = new Rect(CLIP);
+        assertChanged(0);
+    }
+
+    @Test
+    public void changedChildrenForceNewPlacements() {
+        recyclerView.scrollBy(0, 10);
+        assertChanged(0);
+
+        // children that only moved back to where they were still need new placements, as the
+        // snapshot in between was different
+        recyclerView.scrollBy(0, -10);
+        assertChanged(0);
+    }
+
+    @Test
+    public void changedCacheVersionsForceNewPlacements() {
+        assertChanged(1);
+        assertChanged(2);
+    }
+
+    @Test
+    public void changedSharedSnapshotsForceNewPlacements() {
+        final ChildSnapshot shared = new ChildSnapshot();
+        shared.update(recyclerView);
+
+        // a shared snapshot replaces the frame's own one
+        assertFalse(frame.isUnchanged(recyclerView, canvas, 0, shared));
+        place(0, shared);
+        assertTrue(frame.isUnchanged(recyclerView, canvas, 0, shared));
+
+        recyclerView.scrollBy(0, 10);
+        shared.update(recyclerView);
+        assertFalse(frame.isUnchanged(recyclerView, canvas, 0, shared));
+        place(0, shared);
+
+        // another snapshot of the same children isn't comparable with the first one
+        final ChildSnapshot other = new ChildSnapshot();
+        other.update(recyclerView);
+        assertFalse(frame.isUnchanged(recyclerView, canvas, 0, other));
+    }
+
+    @Test
+    public void unchangedFramesAreDrawnWithoutPlacingTheHeadersAgain() {
+        final List<String> placed = toStrings(simulator.step(7));
+        final ScrollSimulator.Frame again = simulator.step(0);
+
+        assertEquals(0, again.headerIdLookups);
+        assertEquals(placed, toStrings(again));
+
+        decoration.notifyHeaderChanged(adapter.headerIdOf(again.firstPosition));
+        final ScrollSimulator.Frame changed = simulator.step(0);
+
+        assertTrue(changed.headerIdLookups > 0);
+        assertEquals(placed, toStrings(changed));
+    }
+
+    /**
+     * Checks that the frame's state changed, then places a header and commits it, after which
+     * the same state is unchanged.
+     */
+    private void assertChanged(int cacheVersion) {
+        assertFalse(frame.isUnchanged(recyclerView, canvas, cacheVersion, null));
+        assertEquals(0, frame.size());
+
+        place(cacheVersion);
+        assertTrue(frame.isUnchanged(recyclerView, canvas, cacheVersion, null));
+        assertEquals(1, frame.size());
+    }
+
+    private void place(int cacheVersion) {
+        place(cacheVersion, null);
+    }
+
+    private void place(int cacheVersion, ChildSnapshot shared) {
+        frame.isUnchanged(recyclerView, canvas, cacheVersion, shared);
+        frame.add(newEntry(), 0, 0, 0);
+        frame.commit(cacheVersion);
+    }
+
+    @NonNull
+    private static HeaderCache.Entry newEntry() {
+        return new HeaderCache.Entry(
+                new SyntheticAdapter.Holder(new View(RuntimeEnvironment.application)), 0);
+    }
+
+    @NonNull
+    private static List<String> toStrings(@NonNull ScrollSimulator.Frame frame) {
+        final List<String> placements = new ArrayList<>();
+
+        for (ScrollSimulator.Placement placement : frame.placements) {
+            placements.add(placement.toString());
+        }
+
+        return placements;
+    }
+}
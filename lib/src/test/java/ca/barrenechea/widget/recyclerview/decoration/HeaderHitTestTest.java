@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeaderHitTestTest {
+    private static final int STEPS = 200;
+    private static final int STEP = 7;
+    private static final float X = ScrollSimulator.WIDTH / 2f;
+
+    @Test
+    public void pinnedHeadersPushedPartlyOffScreenAreFound() {
+        // a header every four items
+        final SyntheticAdapter adapter = new SyntheticAdapter(1_000, 1);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        final ScrollSimulator simulator = new ScrollSimulator(adapter, decoration);
+        int pushed = 0;
+
+        simulator.scrollToPosition(100);
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, STEP)) {
+            final ScrollSimulator.Placement pinned = frame.topmost(false);
+            final int bottom = pinned.top + pinned.height;
+
+            if (pinned.top < 0 && bottom > 1) {
+                // the visible part of the pinned header, and the next header right below it
+                assertHeader(pinned.id, decoration.findHeaderViewUnder(X, bottom - 1));
+                assertHeader(pinned.id + 1, decoration.findHeaderViewUnder(X, bottom + 1));
+                pushed++;
+            }
+        }
+
+        assertTrue(pushed > 0);
+    }
+
+    @Test
+    public void pointsBetweenHeadersFindNothing() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(1_000, 1);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        final ScrollSimulator simulator = new ScrollSimulator(adapter, decoration);
+
+        final ScrollSimulator.Frame frame = simulator.scrollToPosition(100);
+        assertTrue(frame.placements.size() > 1);
+
+        for (int i = 1; i < frame.placements.size(); i++) {
+            final ScrollSimulator.Placement above = frame.placements.get(i - 1);
+            final ScrollSimulator.Placement below = frame.placements.get(i);
+
+            final int between = (above.top + above.height + below.top) / 2;
+
+            assertHeader(above.id, decoration.findHeaderViewUnder(X, above.top + 1));
+            assertNull(decoration.findHeaderViewUnder(X, between));
+            assertHeader(below.id, decoration.findHeaderViewUnder(X, below.top + 1));
+        }
+    }
+
+    @Test
+    public void subHeadersAndHeadersAreFoundSeparately() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(1_000, 5);
+        final DoubleHeaderDecoration decoration = new DoubleHeaderDecoration(adapter);
+        final ScrollSimulator simulator = new ScrollSimulator(adapter, decoration);
+
+        // the pinned header sits right above the pinned subheader at the start of a section
+        final ScrollSimulator.Frame frame = simulator.scrollToPosition(100);
+        final ScrollSimulator.Placement header = frame.topmost(false);
+        final ScrollSimulator.Placement subHeader = frame.topmost(true);
+        assertEquals(header.top + header.height, subHeader.top);
+
+        final int inHeader = header.top + header.height / 2;
+        final int inSubHeader = subHeader.top + subHeader.height / 2;
+
+        assertHeader(header.id, decoration.findHeaderViewUnder(X, inHeader));
+        assertNull(decoration.findSubHeaderViewUnder(X, inHeader));
+        assertHeader(subHeader.id, decoration.findSubHeaderViewUnder(X, inSubHeader));
+        assertNull(decoration.findHeaderViewUnder(X, inSubHeader));
+
+        // while scrolling, every drawn header and subheader is found under its own center
+        for (ScrollSimulator.Frame scrolled : simulator.scroll(STEPS, STEP)) {
+            for (ScrollSimulator.Placement placement : scrolled.placements) {
+                final int y = placement.top + placement.height / 2;
+
+                if (y > 0) {
+                    assertHeader(placement.id, placement.subHeader
+                            ? decoration.findSubHeaderViewUnder(X, y)
+                            : decoration.findHeaderViewUnder(X, y));
+                }
+            }
+        }
+    }
+
+    private static void assertHeader(long id, @Nullable View view) {
+        assertNotNull(view);
+        assertEquals(id, ((SyntheticAdapter.HeaderView) view).id);
+    }
+}
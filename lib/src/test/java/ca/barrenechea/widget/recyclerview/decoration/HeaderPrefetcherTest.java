@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeaderPrefetcherTest {
+    private static final int LARGE_ITEM_COUNT = 1_000_000;
+
+    @Test
+    public void headersAreCreatedOnTheExecutorAndBoundOnTheMainThread() {
+        final ThreadCheckingAdapter adapter = new ThreadCheckingAdapter(LARGE_ITEM_COUNT, 3);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        final QueueExecutor executor = new QueueExecutor();
+        decoration.setAsyncHeaderExecutor(executor);
+
+        final ScrollSimulator simulator = new ScrollSimulator(adapter, decoration);
+        ShadowLooper.pauseMainLooper();
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        final int cached = decoration.getHeaderCache().size();
+        adapter.inWorker = true;
+        executor.runAll();
+        adapter.inWorker = false;
+
+        assertTrue(adapter.createsInWorker > 0);
+        assertEquals(0, adapter.bindsInWorker);
+
+        ShadowLooper.runUiThreadTasks();
+
+        // the prefetched headers are bound and cached once delivered to the main thread
+        assertEquals(cached + adapter.createsInWorker, decoration.getHeaderCache().size());
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void scrollingOnlyLooksUpNewlyRevealedPositions() {
+        // a header every thousand items, so the prefetch ranges rarely hold one
+        final SyntheticAdapter adapter = new SyntheticAdapter(LARGE_ITEM_COUNT, 250);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new StickyHeaderDecoration(adapter));
+        final RecyclerView recyclerView = simulator.recyclerView();
+        final int[] lookups = new int[1];
+
+        final HeaderPrefetcher prefetcher = new HeaderPrefetcher(new HeaderCache(),
+                new QueueExecutor()) {
+            @Override
+            long getHeaderId(int position) {
+                lookups[0]++;
+                return adapter.headerIdOf(position);
+            }
+
+            @NonNull
+            @Override
+            RecyclerView.ViewHolder createHeader(@NonNull ViewGroup parent, int viewType) {
+                return adapter.onCreateHeaderViewHolder(parent);
+            }
+
+            @Override
+            void bindHeader(@NonNull RecyclerView parent, @NonNull HeaderCache.Entry entry,
+                    int position) {
+            }
+        };
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2 + 100);
+        prefetcher.prefetch(recyclerView);
+
+        for (int i = 0; i < 200; i++) {
+            final int first = firstPosition(recyclerView);
+            final int last = lastPosition(recyclerView);
+
+            simulator.step(i < 100 ? 23 : -23);
+            lookups[0] = 0;
+            prefetcher.prefetch(recyclerView);
+
+            // the positions that came within reach of either end, plus the one before each scan
+            final int revealed = Math.abs(firstPosition(recyclerView) - first)
+                    + Math.abs(lastPosition(recyclerView) - last);
+            assertTrue("looked up " + lookups[0] + " for " + revealed + " revealed",
+                    lookups[0] <= 2 * revealed + 2);
+        }
+    }
+
+    private static int firstPosition(@NonNull RecyclerView recyclerView) {
+        return recyclerView.getChildAdapterPosition(recyclerView.getChildAt(0));
+    }
+
+    private static int lastPosition(@NonNull RecyclerView recyclerView) {
+        return recyclerView.getChildAdapterPosition(
+                recyclerView.getChildAt(recyclerView.getChildCount() - 1));
+    }
+
+    /**
+     * Runs the submitted work only when asked to, standing in for a worker thread.
+     */
+    private static final class QueueExecutor implements Executor {
+        private final List<Runnable> queue = new ArrayList<>();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            for (int i = 0; i < queue.size(); i++) {
+                queue.get(i).run();
+            }
+
+            queue.clear();
+        }
+    }
+
+    /**
+     * Counts the headers created and bound while its owner pretends to be on a worker thread.
+     */
+    private static final class ThreadCheckingAdapter extends SyntheticAdapter {
+        boolean inWorker;
+        int createsInWorker;
+        int bindsInWorker;
+
+        ThreadCheckingAdapter(int itemCount, int sectionSize) {
+            super(itemCount, sectionSize);
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateHeaderViewHolder(@NonNull ViewGroup parent) {
+            if (inWorker) {
+                createsInWorker++;
+            }
+
+            return super.onCreateHeaderViewHolder(parent);
+        }
+
+        @Override
+        public void onBindHeaderViewHolder(@NonNull Holder viewHolder, int position) {
+            if (inWorker) {
+                bindsInWorker++;
+            }
+
+            super.onBindHeaderViewHolder(viewHolder, position);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Canvas;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeaderSnapshotTest {
+    private CountingAdapter adapter;
+    private StickyHeaderDecoration decoration;
+    private ScrollSimulator simulator;
+
+    @Before
+    public void setUp() {
+        // sections of twenty items, so only the first header is on screen while scrolling a bit
+        adapter = new CountingAdapter(1_000, 5);
+        decoration = new StickyHeaderDecoration(adapter);
+        decoration.setSnapshotRenderingEnabled(true);
+        simulator = new ScrollSimulator(adapter, decoration);
+
+        simulator.scrollToPosition(0);
+        assertEquals(1, adapter.headerDraws);
+    }
+
+    @Test
+    public void cachedHeadersAreReplayedFromTheirSnapshots() {
+        for (ScrollSimulator.Frame frame : simulator.scroll(10, 7)) {
+            assertEquals(0, frame.binds);
+        }
+
+        assertEquals(1, adapter.headerDraws);
+    }
+
+    @Test
+    public void headersChangedThroughTheDecorationAreRecordedAgain() {
+        decoration.notifyHeaderChanged(0);
+        assertEquals(1, simulator.step(7).binds);
+        assertEquals(2, adapter.headerDraws);
+
+        simulator.scroll(10, 7);
+        assertEquals(2, adapter.headerDraws);
+    }
+
+    @Test
+    public void headersChangedThroughTheAdapterAreRecordedAgain() {
+        decoration.setHeaderDiffCallback(new HeaderDiffCallback());
+
+        adapter.notifyItemChanged(3);
+        assertEquals(1, simulator.relayout().binds);
+        assertEquals(2, adapter.headerDraws);
+
+        simulator.scroll(10, 7);
+        assertEquals(2, adapter.headerDraws);
+    }
+
+    /**
+     * Counts how many times its header views draw themselves, which only happens when a header
+     * is recorded while snapshots are enabled.
+     */
+    private static class CountingAdapter extends SyntheticAdapter {
+        int headerDraws;
+
+        CountingAdapter(int itemCount, int sectionSize) {
+            super(itemCount, sectionSize);
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateHeaderViewHolder(@NonNull ViewGroup parent) {
+            return new Holder(new HeaderView(parent.getContext(), false, HEADER_HEIGHT) {
+                @Override
+                public void draw(Canvas canvas) {
+                    headerDraws++;
+                    super.draw(canvas);
+                }
+            });
+        }
+    }
+}
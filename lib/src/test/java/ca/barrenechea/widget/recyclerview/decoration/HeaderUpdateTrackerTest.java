@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeaderUpdateTrackerTest {
+    // ten items per section
+    private static final int SECTION_SIZE = 10;
+
+    private final List<Long> changed = new ArrayList<>();
+    private boolean allChanged;
+
+    private SyntheticAdapter adapter;
+    private HeaderUpdateTracker tracker;
+
+    @Before
+    public void setUp() {
+        adapter = new SyntheticAdapter(100, 1);
+        tracker = new HeaderUpdateTracker() {
+            @Override
+            long getHeaderId(int position) {
+                return position / SECTION_SIZE;
+            }
+
+            @Override
+            void onHeaderChanged(long headerId) {
+                changed.add(headerId);
+            }
+
+            @Override
+            void onAllHeadersChanged() {
+                allChanged = true;
+            }
+        };
+        tracker.attach(adapter);
+    }
+
+    @Test
+    public void changedItemsReportTheirSection() {
+        tracker.onItemRangeChanged(25, 3);
+        assertChanged(2L);
+    }
+
+    @Test
+    public void earlierChangesFollowLaterInserts() {
+        tracker.onItemRangeChanged(40, 1);
+        tracker.onItemRangeInserted(5, 3);
+        assertChanged(0L, 4L);
+    }
+
+    @Test
+    public void removalsReportBothSidesOfTheGap() {
+        tracker.onItemRangeRemoved(30, 2);
+        assertChanged(2L, 3L);
+    }
+
+    @Test
+    public void removedPositionsAreForgotten() {
+        tracker.onItemRangeChanged(3, 1);
+        tracker.onItemRangeChanged(50, 1);
+        tracker.onItemRangeRemoved(0, 10);
+        assertChanged(0L, 4L);
+    }
+
+    @Test
+    public void movesReportBothEnds() {
+        tracker.onItemRangeMoved(15, 72, 1);
+        assertChanged(1L, 7L);
+    }
+
+    @Test
+    public void datasetChangesReportEverything() {
+        tracker.onItemRangeChanged(25, 1);
+        tracker.onChanged();
+        tracker.apply();
+
+        assertTrue(allChanged);
+        assertTrue(changed.isEmpty());
+    }
+
+    @Test
+    public void largeUpdatesReportEverything() {
+        tracker.onItemRangeChanged(0, 100);
+        tracker.onItemRangeInserted(0, 200);
+        tracker.apply();
+
+        assertTrue(allChanged);
+    }
+
+    @Test
+    public void applyingResetsTheTrackedPositions() {
+        tracker.onItemRangeChanged(25, 1);
+        tracker.apply();
+        changed.clear();
+
+        tracker.apply();
+        assertTrue(changed.isEmpty());
+        assertFalse(allChanged);
+    }
+
+    private void assertChanged(Long... ids) {
+        tracker.apply();
+
+        assertFalse(allChanged);
+        assertEquals(Arrays.asList(ids), changed);
+    }
+}
@@ -0,0 +1,618 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScrollSimulationTest {
+    private static final int LARGE_ITEM_COUNT = 1_000_000;
+    private static final int STEPS = 300;
+    private static final int STEP = 23;
+
+    @Test
+    public void stickyHeaderFollowsTheFirstVisibleSection() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(LARGE_ITEM_COUNT, 5);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new StickyHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, STEP)) {
+            assertStickyHeader(adapter, frame);
+        }
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, -STEP)) {
+            assertStickyHeader(adapter, frame);
+        }
+    }
+
+    @Test
+    public void doubleHeaderFollowsTheFirstVisibleSection() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(LARGE_ITEM_COUNT, 5);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new DoubleHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, STEP)) {
+            assertDoubleHeader(adapter, frame);
+        }
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, -STEP)) {
+            assertDoubleHeader(adapter, frame);
+        }
+    }
+
+    @Test
+    public void hierarchicalHeadersFollowTheFirstVisibleSection() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(LARGE_ITEM_COUNT, 5);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new HierarchicalHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        // two levels lay out like a double header
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, STEP)) {
+            assertDoubleHeader(adapter, frame);
+        }
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, -STEP)) {
+            assertDoubleHeader(adapter, frame);
+        }
+    }
+
+    @Test
+    public void threeHierarchicalLevelsStackAndArePushedPerLevel() {
+        final ThreeLevelAdapter adapter = new ThreeLevelAdapter(LARGE_ITEM_COUNT);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new HierarchicalHeaderDecoration(adapter));
+        final RecyclerView recyclerView = simulator.recyclerView();
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        for (int i = 0; i < STEPS; i++) {
+            assertThreeLevels(adapter, recyclerView, simulator.step(STEP));
+        }
+
+        for (int i = 0; i < STEPS; i++) {
+            assertThreeLevels(adapter, recyclerView, simulator.step(-STEP));
+        }
+    }
+
+    @Test
+    public void hierarchicalHeaderWorkDoesNotGrowWithTheAdapter() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(LARGE_ITEM_COUNT, 3);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new HierarchicalHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(100, STEP)) {
+            final long bound = 16L * (frame.childCount + 1);
+            assertTrue("frame at " + frame.firstPosition + " made " + frame.headerIdLookups
+                    + " header id lookups", frame.headerIdLookups <= bound);
+        }
+    }
+
+    @Test
+    public void stickyHeaderWorkDoesNotGrowWithTheAdapter() {
+        assertWorkIsBounded(new SyntheticAdapter(1_000, 3), false);
+        assertWorkIsBounded(new SyntheticAdapter(LARGE_ITEM_COUNT, 3), false);
+    }
+
+    @Test
+    public void doubleHeaderWorkDoesNotGrowWithTheAdapter() {
+        assertWorkIsBounded(new SyntheticAdapter(1_000, 3), true);
+        assertWorkIsBounded(new SyntheticAdapter(LARGE_ITEM_COUNT, 3), true);
+    }
+
+    @Test
+    public void scrollingBackOverCachedSectionsCreatesNoHeaders() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(LARGE_ITEM_COUNT, 3);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new StickyHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+        simulator.scroll(20, 7);
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(20, -7)) {
+            assertEquals(0, frame.creates);
+            assertEquals(0, frame.cacheMisses);
+        }
+    }
+
+    @Test
+    public void headersEvictedWhilePlacedAreNotRebound() {
+        // a header every four items, with room for a single cached header
+        final SyntheticAdapter adapter = new SyntheticAdapter(LARGE_ITEM_COUNT, 1);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        decoration.setHeaderCacheSize(1);
+        final ScrollSimulator simulator = new ScrollSimulator(adapter, decoration);
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, STEP)) {
+            assertTrue(frame.placements.size() > 1);
+
+            // every placed header still shows its own section after the ones below evicted it
+            for (int i = 1; i < frame.placements.size(); i++) {
+                assertEquals(frame.placements.get(i - 1).id + 1, frame.placements.get(i).id);
+            }
+        }
+    }
+
+    @Test
+    public void headersOutsideTheClipAreNeitherBoundNorDrawn() {
+        // a header every four items, so several are placed in every frame
+        final SyntheticAdapter adapter = new SyntheticAdapter(LARGE_ITEM_COUNT, 1);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        final ScrollSimulator simulator = new ScrollSimulator(adapter, decoration);
+        final Rect clip = new Rect(0, 0, ScrollSimulator.WIDTH, ScrollSimulator.HEIGHT / 2);
+        int changed = 0;
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        for (int i = 0; i < STEPS; i++) {
+            final ScrollSimulator.Frame full = simulator.step(STEP);
+            final List<String> expected = new ArrayList<>();
+
+            for (ScrollSimulator.Placement placement : full.placements) {
+                if (placement.top >= clip.bottom) {
+                    // a cached header below the clip that would need a rebind if it were drawn
+                    decoration.notifyHeaderChanged(placement.id);
+                    changed++;
+                } else if (placement.top + placement.height > clip.top) {
+                    expected.add(placement.toString());
+                }
+            }
+
+            simulator.clip(clip);
+            final ScrollSimulator.Frame clipped = simulator.step(0);
+            simulator.clip(null);
+
+            final List<String> drawn = new ArrayList<>();
+            for (ScrollSimulator.Placement placement : clipped.placements) {
+                drawn.add(placement.toString());
+            }
+
+            assertEquals(0, clipped.binds);
+            assertEquals(expected, drawn);
+            assertEquals(clipped.placements.size(), clipped.drawn);
+            assertStickyHeader(adapter, clipped);
+        }
+
+        assertTrue(changed > 0);
+    }
+
+    @Test
+    public void headerHeightChangesWhileScrollingMoveTheItems() {
+        final NarrowingAdapter adapter = new NarrowingAdapter(LARGE_ITEM_COUNT, 3);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new StickyHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+        simulator.scroll(20, STEP);
+
+        // scrolling back at a narrower width remeasures the cached headers from the offsets
+        // requested in the middle of the scroll, where the offsets can't be invalidated
+        ShadowLooper.pauseMainLooper();
+        simulator.resize(ScrollSimulator.WIDTH / 2);
+        simulator.scroll(20, -STEP);
+        ShadowLooper.runUiThreadTasks();
+        ShadowLooper.unPauseMainLooper();
+
+        final ScrollSimulator.Frame frame = simulator.relayout();
+        assertNarrowHeaders(adapter, simulator.recyclerView(), frame);
+    }
+
+    @Test
+    public void payloadRebindsWhileScrollingMoveTheItems() {
+        final PayloadAdapter adapter = new PayloadAdapter(LARGE_ITEM_COUNT, 3);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        final ScrollSimulator simulator = new ScrollSimulator(adapter, decoration);
+        final RecyclerView recyclerView = simulator.recyclerView();
+
+        // cache the header of a section further down, then scroll back above its start
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+        simulator.scroll(40, STEP);
+        final int last = recyclerView.getChildAdapterPosition(
+                recyclerView.getChildAt(recyclerView.getChildCount() - 1));
+        final long headerId = adapter.headerIdOf(last);
+        simulator.scroll(40, -STEP);
+
+        // the header is rebound from the offsets of its first item, requested in the middle of
+        // the scroll that brings the item in
+        decoration.notifyHeaderChanged(headerId, PayloadAdapter.TALL);
+        ShadowLooper.pauseMainLooper();
+        simulator.scroll(40, STEP);
+        ShadowLooper.runUiThreadTasks();
+        ShadowLooper.unPauseMainLooper();
+
+        final ScrollSimulator.Frame frame = simulator.relayout();
+        assertEquals(1, adapter.payloadBinds);
+
+        boolean drawn = false;
+        for (ScrollSimulator.Placement placement : frame.placements) {
+            if (placement.id == headerId) {
+                assertEquals(PayloadAdapter.TALL_HEADER_HEIGHT, placement.height);
+                drawn = true;
+            }
+        }
+        assertTrue(drawn);
+
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            final View child = recyclerView.getChildAt(i);
+            final int position = recyclerView.getChildAdapterPosition(child);
+
+            if (position > 0 && adapter.headerIdOf(position) == headerId
+                    && adapter.headerIdOf(position - 1) != headerId) {
+                assertEquals(PayloadAdapter.TALL_HEADER_HEIGHT,
+                        recyclerView.getLayoutManager().getTopDecorationHeight(child));
+            }
+        }
+    }
+
+    @Test
+    public void doubleHeaderFetchesIdsOncePerFrame() {
+        final RangeAdapter adapter = new RangeAdapter(LARGE_ITEM_COUNT, 5);
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new DoubleHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(LARGE_ITEM_COUNT / 2);
+
+        for (int i = 0; i < STEPS; i++) {
+            adapter.rangeLookups = 0;
+            final ScrollSimulator.Frame frame = simulator.step(STEP);
+
+            // one range for the headers and one for the subheaders
+            assertEquals(2, adapter.rangeLookups);
+            assertDoubleHeader(adapter, frame);
+        }
+    }
+
+    @Test
+    public void placeholdersGetNoHeaders() {
+        final int from = 1_000;
+        final int to = 1_100;
+        final SyntheticAdapter adapter = new SyntheticAdapter(10_000, 5) {
+            @Override
+            public long getHeaderId(int position) {
+                return position >= from && position < to
+                        ? StickyHeaderDecoration.UNKNOWN_HEADER_ID
+                        : super.getHeaderId(position);
+            }
+
+            @Override
+            public void onBindHeaderViewHolder(@NonNull Holder viewHolder, int position) {
+                assertFalse("placeholder " + position + " was bound",
+                        position >= from && position < to);
+                super.onBindHeaderViewHolder(viewHolder, position);
+            }
+        };
+        final ScrollSimulator simulator =
+                new ScrollSimulator(adapter, new StickyHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(from - 10);
+
+        for (ScrollSimulator.Frame frame : simulator.scroll(STEPS, STEP)) {
+            final ScrollSimulator.Placement pinned = frame.topmost(false);
+
+            if (frame.firstPosition >= from && frame.firstPosition < to && pinned != null) {
+                // only the loaded sections below the placeholders have headers
+                assertTrue(pinned.toString(), pinned.top >= frame.firstTop);
+            }
+        }
+    }
+
+    /**
+     * Scrolls through the middle of the adapter and checks that the header id lookups of every
+     * frame are bounded by the number of children rather than the number of items.
+     */
+    private void assertWorkIsBounded(@NonNull SyntheticAdapter adapter, boolean doubleHeaders) {
+        final ScrollSimulator simulator = doubleHeaders
+                ? new ScrollSimulator(adapter, new DoubleHeaderDecoration(adapter))
+                : new ScrollSimulator(adapter, new StickyHeaderDecoration(adapter));
+
+        simulator.scrollToPosition(adapter.getItemCount() / 2);
+        final List<ScrollSimulator.Frame> frames = simulator.scroll(100, STEP);
+
+        for (ScrollSimulator.Frame frame : frames) {
+            final long bound = 16L * (frame.childCount + 1);
+            assertTrue("frame at " + frame.firstPosition + " made " + frame.headerIdLookups
+                    + " header id lookups", frame.headerIdLookups <= bound);
+        }
+    }
+
+    private static void assertStickyHeader(@NonNull SyntheticAdapter adapter,
+            @NonNull ScrollSimulator.Frame frame) {
+
+        final ScrollSimulator.Placement pinned = frame.topmost(false);
+        assertNotNull("no header drawn at " + frame.firstPosition, pinned);
+
+        // the pinned header belongs to the first child, and sits at the top unless the next
+        // section's header pushes it up
+        assertEquals(adapter.headerIdOf(frame.firstPosition), pinned.id);
+        assertTrue(pinned.toString(), pinned.top <= Math.max(0, frame.firstTop - pinned.height));
+        assertTrue(pinned.toString(), pinned.top + pinned.height > -pinned.height);
+
+        for (ScrollSimulator.Placement placement : frame.placements) {
+            assertEquals(ScrollSimulator.WIDTH, placement.width);
+            assertEquals(SyntheticAdapter.HEADER_HEIGHT, placement.height);
+        }
+    }
+
+    private static void assertDoubleHeader(@NonNull SyntheticAdapter adapter,
+            @NonNull ScrollSimulator.Frame frame) {
+
+        final ScrollSimulator.Placement header = frame.topmost(false);
+        final ScrollSimulator.Placement subHeader = frame.topmost(true);
+        assertNotNull("no header drawn at " + frame.firstPosition, header);
+        assertNotNull("no subheader drawn at " + frame.firstPosition, subHeader);
+
+        assertEquals(adapter.headerIdOf(frame.firstPosition), header.id);
+        assertEquals(adapter.subHeaderIdOf(frame.firstPosition), subHeader.id);
+
+        // the pinned subheader sits below the pinned header unless the next subheader pushes it
+        // up, sliding it under the header
+        final int subHeaderTop = frame.firstTop - SyntheticAdapter.SUB_HEADER_HEIGHT;
+        assertTrue(subHeader.toString(),
+                subHeader.top <= Math.max(SyntheticAdapter.HEADER_HEIGHT, subHeaderTop));
+    }
+
+    /**
+     * Checks that the pinned header of every level belongs to the first child and sits in the
+     * stack below the levels above it, unless pushed up by the first later child that starts a
+     * section of that level or of a level above it.
+     */
+    private static void assertThreeLevels(@NonNull ThreeLevelAdapter adapter,
+            @NonNull RecyclerView recyclerView, @NonNull ScrollSimulator.Frame frame) {
+
+        final int height = ThreeLevelAdapter.LEVEL_HEIGHT;
+        final int levels = ThreeLevelAdapter.LEVELS;
+        final View first = recyclerView.getChildAt(0);
+        final int firstStarted = adapter.firstStartedLevel(frame.firstPosition);
+
+        for (int level = 0; level < levels; level++) {
+            final long id = adapter.headerIdOf(level, frame.firstPosition);
+            ScrollSimulator.Placement pinned = null;
+
+            for (ScrollSimulator.Placement placement : frame.placements) {
+                if (placement.level == level && placement.id == id) {
+                    pinned = placement;
+                }
+            }
+
+            assertNotNull("no level " + level + " header drawn at " + frame.firstPosition,
+                    pinned);
+
+            int expected = level * height;
+
+            if (firstStarted <= level) {
+                // the first child's own headers sit above it until they reach the stack
+                expected = Math.max(expected, (int) first.getY() - (levels - level) * height);
+            }
+
+            for (int i = 1; i < recyclerView.getChildCount(); i++) {
+                final View child = recyclerView.getChildAt(i);
+                final int started =
+                        adapter.firstStartedLevel(recyclerView.getChildAdapterPosition(child));
+
+                if (started <= level) {
+                    final int limit = (int) child.getY() - (levels - started) * height - height;
+                    expected = Math.min(expected, limit);
+                    break;
+                }
+            }
+
+            assertEquals(pinned.toString(), expected, pinned.top);
+        }
+    }
+
+    /**
+     * Checks that the headers were drawn, and made room for, at their narrow height.
+     */
+    private static void assertNarrowHeaders(@NonNull SyntheticAdapter adapter,
+            @NonNull RecyclerView recyclerView, @NonNull ScrollSimulator.Frame frame) {
+
+        assertFalse(frame.placements.isEmpty());
+
+        for (ScrollSimulator.Placement placement : frame.placements) {
+            assertEquals(NarrowingAdapter.NARROW_HEADER_HEIGHT, placement.height);
+        }
+
+        final RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            final View child = recyclerView.getChildAt(i);
+            final int position = recyclerView.getChildAdapterPosition(child);
+
+            if (position > 0 && adapter.headerIdOf(position) != adapter.headerIdOf(position - 1)) {
+                assertEquals("offset of " + position, NarrowingAdapter.NARROW_HEADER_HEIGHT,
+                        layoutManager.getTopDecorationHeight(child));
+            }
+        }
+    }
+
+    /**
+     * An adapter whose headers wrap to twice their height when the list is narrower than
+     * {@link ScrollSimulator#WIDTH}.
+     */
+    private static class NarrowingAdapter extends SyntheticAdapter {
+        static final int NARROW_HEADER_HEIGHT = HEADER_HEIGHT * 2;
+
+        NarrowingAdapter(int itemCount, int sectionSize) {
+            super(itemCount, sectionSize);
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateHeaderViewHolder(@NonNull ViewGroup parent) {
+            return new Holder(new NarrowingHeaderView(parent.getContext()));
+        }
+    }
+
+    private static class NarrowingHeaderView extends SyntheticAdapter.HeaderView {
+        NarrowingHeaderView(@NonNull Context context) {
+            super(context, false, SyntheticAdapter.HEADER_HEIGHT);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            final int width = View.MeasureSpec.getSize(widthMeasureSpec);
+            setMeasuredDimension(width, width < ScrollSimulator.WIDTH
+                    ? NarrowingAdapter.NARROW_HEADER_HEIGHT : SyntheticAdapter.HEADER_HEIGHT);
+        }
+    }
+
+    /**
+     * Three header levels, each splitting the sections of the level above in four. The ids of the
+     * deepest level only differ in their top bits from one item to the next, and the ids of
+     * different levels overlap, so neither may be folded into a shared key.
+     */
+    private static class ThreeLevelAdapter extends SyntheticAdapter {
+        static final int LEVELS = 3;
+        static final int LEVEL_HEIGHT = 20;
+
+        ThreeLevelAdapter(int itemCount) {
+            super(itemCount, 1);
+        }
+
+        long headerIdOf(int level, int position) {
+            if (level == LEVELS - 1) {
+                return (position >> 1) | ((long) (position & 1) << 61);
+            }
+            return position >> (2 * (LEVELS - 1 - level));
+        }
+
+        /**
+         * @return the outermost level whose section starts at the position, or the level count
+         */
+        int firstStartedLevel(int position) {
+            for (int level = 0; level < LEVELS; level++) {
+                if (position == 0
+                        || headerIdOf(level, position) != headerIdOf(level, position - 1)) {
+                    return level;
+                }
+            }
+            return LEVELS;
+        }
+
+        @Override
+        public int getLevelCount() {
+            return LEVELS;
+        }
+
+        @Override
+        public long getHeaderId(int level, int position) {
+            headerIdLookups++;
+            return headerIdOf(level, position);
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateHeaderHolder(@NonNull ViewGroup parent, int level) {
+            return new Holder(new HeaderView(parent.getContext(), level, LEVEL_HEIGHT));
+        }
+
+        @Override
+        public void onBindHeaderHolder(@NonNull Holder viewHolder, int level, int position) {
+            ((HeaderView) viewHolder.itemView).id = headerIdOf(level, position);
+        }
+    }
+
+    /**
+     * An adapter whose headers grow taller when rebound with the {@link #TALL} payload.
+     */
+    private static class PayloadAdapter extends SyntheticAdapter
+            implements StickyHeaderPayloadBinder<SyntheticAdapter.Holder> {
+
+        static final Object TALL = new Object();
+        static final int TALL_HEADER_HEIGHT = HEADER_HEIGHT * 2;
+
+        int payloadBinds;
+
+        PayloadAdapter(int itemCount, int sectionSize) {
+            super(itemCount, sectionSize);
+        }
+
+        @Override
+        public void onBindHeaderViewHolder(@NonNull Holder viewHolder, int position,
+                @NonNull List<Object> payloads) {
+
+            if (payloads.contains(TALL)) {
+                payloadBinds++;
+                viewHolder.itemView.getLayoutParams().height = TALL_HEADER_HEIGHT;
+            } else {
+                onBindHeaderViewHolder(viewHolder, position);
+            }
+        }
+
+        @Override
+        public void onBindHeaderViewHolder(@NonNull Holder viewHolder, int position) {
+            super.onBindHeaderViewHolder(viewHolder, position);
+            viewHolder.itemView.getLayoutParams().height = HEADER_HEIGHT;
+        }
+    }
+
+    private static class RangeAdapter extends SyntheticAdapter
+            implements HeaderIdRangeProvider, SubHeaderIdRangeProvider {
+
+        int rangeLookups;
+
+        RangeAdapter(int itemCount, int sectionSize) {
+            super(itemCount, sectionSize);
+        }
+
+        @Override
+        public void getHeaderIds(int start, int count, @NonNull long[] out) {
+            rangeLookups++;
+
+            for (int i = 0; i < count; i++) {
+                out[i] = headerIdOf(start + i);
+            }
+        }
+
+        @Override
+        public void getSubHeaderIds(int start, int count, @NonNull long[] out) {
+            rangeLookups++;
+
+            for (int i = 0; i < count; i++) {
+                out[i] = subHeaderIdOf(start + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SectionIndexTest {
+    private final List<Long> ids = new ArrayList<>(Arrays.asList(
+            0L, 0L, 0L, 1L, 1L, 2L, 2L, 2L, 2L, 3L, 3L, 4L));
+
+    private SyntheticAdapter adapter;
+    private SectionIndex index;
+
+    @Before
+    public void setUp() {
+        adapter = new SyntheticAdapter(ids.size(), 1);
+        index = new SectionIndex() {
+            @Override
+            long getHeaderId(int position) {
+                return ids.get(position);
+            }
+        };
+        index.attach(adapter);
+
+        // build the index, so the moves below are applied incrementally
+        assertEquals(5, index.sectionCount());
+    }
+
+    @Test
+    public void movesUpFollowTheFinalList() {
+        move(9, 1, 1);
+        assertMatchesList();
+
+        move(10, 0, 2);
+        assertMatchesList();
+    }
+
+    @Test
+    public void movesDownFollowTheFinalList() {
+        move(1, 9, 1);
+        assertMatchesList();
+
+        move(0, 8, 3);
+        assertMatchesList();
+    }
+
+    @Test
+    public void insertsSplitAndExtendSections() {
+        // a new section before the first item of section 1
+        insert(3, 9L);
+        assertMatchesRebuild();
+
+        // the first item of section 1 again, and the last item of section 0
+        insert(4, 1L);
+        assertMatchesRebuild();
+        insert(3, 0L);
+        assertMatchesRebuild();
+
+        // the middle of section 2, splitting it in three
+        insert(9, 5L, 5L);
+        assertMatchesRebuild();
+
+        // after the last item
+        insert(ids.size(), 4L, 6L);
+        assertMatchesRebuild();
+    }
+
+    @Test
+    public void removalsShrinkAndMergeSections() {
+        // the first item of section 2, and the last item of section 0
+        remove(5, 1);
+        assertMatchesRebuild();
+        remove(2, 1);
+        assertMatchesRebuild();
+
+        // a whole section, merging the sections on either side of it
+        insert(2, 1L, 0L);
+        assertMatchesRebuild();
+        remove(2, 1);
+        assertMatchesRebuild();
+        remove(3, 2);
+        assertMatchesRebuild();
+
+        // the first item
+        remove(0, 1);
+        assertMatchesRebuild();
+    }
+
+    @Test
+    public void changesSplitAndMergeSections() {
+        // the first item of section 2 joins section 1, the last one joins section 3
+        change(5, 1L);
+        assertMatchesRebuild();
+        change(8, 3L);
+        assertMatchesRebuild();
+
+        // a whole section joins the one before it
+        change(3, 0L, 0L, 0L);
+        assertMatchesRebuild();
+
+        // the middle of a section splits it
+        change(1, 7L);
+        assertMatchesRebuild();
+
+        // the first and the last item
+        change(0, 8L);
+        assertMatchesRebuild();
+        change(ids.size() - 1, 3L);
+        assertMatchesRebuild();
+    }
+
+    @Test
+    public void detachingUnregistersFromTheAdapter() {
+        assertTrue(adapter.hasObservers());
+
+        index.detach();
+
+        assertFalse(adapter.hasObservers());
+        assertFalse(index.isAttached());
+    }
+
+    @Test
+    public void decorationDetachesItsObservers() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(100, 5);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        decoration.setSectionIndexEnabled(true);
+        decoration.setHeaderDiffCallback(new HeaderDiffCallback() {
+            @Override
+            public boolean areHeaderContentsTheSame(long headerId) {
+                return true;
+            }
+        });
+
+        final RecyclerView recyclerView = new ScrollSimulator(adapter, decoration).recyclerView();
+        assertTrue(adapter.hasObservers());
+
+        recyclerView.removeItemDecoration(decoration);
+        recyclerView.setAdapter(null);
+        decoration.detach();
+
+        assertFalse(adapter.hasObservers());
+    }
+
+    /**
+     * Moves the items in the list and notifies the index of the move, the way an adapter would.
+     */
+    private void move(int from, int to, int count) {
+        final List<Long> moved = new ArrayList<>(ids.subList(from, from + count));
+        ids.subList(from, from + count).clear();
+        ids.addAll(to, moved);
+
+        index.onItemRangeMoved(from, to, count);
+    }
+
+    /**
+     * Inserts the items in the list and notifies the index, the way an adapter would.
+     */
+    private void insert(int position, long... inserted) {
+        for (int i = 0; i < inserted.length; i++) {
+            ids.add(position + i, inserted[i]);
+        }
+
+        index.onItemRangeInserted(position, inserted.length);
+    }
+
+    /**
+     * Removes the items from the list and notifies the index, the way an adapter would.
+     */
+    private void remove(int position, int count) {
+        ids.subList(position, position + count).clear();
+        index.onItemRangeRemoved(position, count);
+    }
+
+    /**
+     * Replaces the items in the list and notifies the index, the way an adapter would.
+     */
+    private void change(int position, long... changed) {
+        for (int i = 0; i < changed.length; i++) {
+            ids.set(position + i, changed[i]);
+        }
+
+        index.onItemRangeChanged(position, changed.length);
+    }
+
+    /**
+     * Checks the incrementally updated index against one built from scratch for the same list,
+     * and against the list itself.
+     */
+    private void assertMatchesRebuild() {
+        final SectionIndex rebuilt = new SectionIndex() {
+            @Override
+            long getHeaderId(int position) {
+                return ids.get(position);
+            }
+        };
+        rebuilt.attach(new SyntheticAdapter(ids.size(), 1));
+
+        assertEquals(rebuilt.sectionCount(), index.sectionCount());
+
+        for (int section = 0; section < rebuilt.sectionCount(); section++) {
+            assertEquals("start of section " + section,
+                    rebuilt.sectionStart(section), index.sectionStart(section));
+            assertEquals("size of section " + section,
+                    rebuilt.sectionSize(section), index.sectionSize(section));
+        }
+
+        for (int position = 0; position < ids.size(); position++) {
+            assertEquals("section start at " + position,
+                    rebuilt.isSectionStart(position), index.isSectionStart(position));
+        }
+
+        assertMatchesList();
+    }
+
+    /**
+     * Checks the index against sections computed from scratch from the list.
+     */
+    private void assertMatchesList() {
+        final List<Integer> starts = new ArrayList<>();
+
+        for (int position = 0; position < ids.size(); position++) {
+            if (position == 0 || !ids.get(position).equals(ids.get(position - 1))) {
+                starts.add(position);
+            }
+
+            assertEquals("header id at " + position,
+                    (long) ids.get(position), index.headerIdAt(position));
+        }
+
+        assertEquals(starts.size(), index.sectionCount());
+
+        for (int section = 0; section < starts.size(); section++) {
+            assertEquals("start of section " + section,
+                    (int) starts.get(section), index.sectionStart(section));
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SectionSpanSizeLookupTest {
+
+    @Test
+    public void sectionsStartOnNewRows() {
+        final int[] sizes = {1, 7, 3, 12, 2, 5, 4, 9};
+
+        assertMatchesLayout(sizes, 1);
+        assertMatchesLayout(sizes, 3);
+        assertMatchesLayout(sizes, 4);
+    }
+
+    @Test
+    public void rowsFollowDataChanges() {
+        final IrregularSections sections = new IrregularSections(new int[]{4, 4, 4});
+        final SyntheticAdapter adapter = new SyntheticAdapter(12, 1);
+        final SectionSpanSizeLookup lookup =
+                SectionSpanSizeLookup.forStickyHeaders(adapter, sections, 3);
+
+        assertEquals(5, lookup.getSpanGroupIndex(11, 3));
+
+        sections.sizes = new int[]{6, 6};
+        adapter.notifyDataSetChanged();
+
+        assertEquals(3, lookup.getSpanGroupIndex(11, 3));
+        assertEquals(2, lookup.getSpanIndex(11, 3));
+        assertEquals(1, lookup.getSpanSize(11));
+    }
+
+    @Test
+    public void detachedLookupsReattachWhenUsed() {
+        final IrregularSections sections = new IrregularSections(new int[]{4, 4, 4});
+        final SyntheticAdapter adapter = new SyntheticAdapter(12, 1);
+        final SectionSpanSizeLookup lookup =
+                SectionSpanSizeLookup.forStickyHeaders(adapter, sections, 3);
+
+        assertEquals(5, lookup.getSpanGroupIndex(11, 3));
+
+        lookup.detach();
+        assertFalse(adapter.hasObservers());
+
+        // the change is missed while detached, so the sections are rebuilt on the next use
+        sections.sizes = new int[]{6, 6};
+        assertEquals(3, lookup.getSpanGroupIndex(11, 3));
+        assertTrue(adapter.hasObservers());
+    }
+
+    @Test
+    public void gridHeadersOffsetTheFirstRowOfEachSection() {
+        // sticky sections of eight items, which take three rows at three spans and two at five
+        final SyntheticAdapter adapter = new SyntheticAdapter(400, 2);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        final GridLayoutManager layoutManager =
+                new GridLayoutManager(RuntimeEnvironment.application, 3);
+        layoutManager.setSpanSizeLookup(
+                SectionSpanSizeLookup.forStickyHeaders(adapter, adapter, 3));
+
+        final RecyclerView recyclerView = new RecyclerView(RuntimeEnvironment.application);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+        recyclerView.addItemDecoration(decoration);
+
+        layout(recyclerView);
+        assertGridHeaders(adapter, recyclerView, decoration, 3);
+
+        layoutManager.scrollToPositionWithOffset(100, -20);
+        layout(recyclerView);
+        assertGridHeaders(adapter, recyclerView, decoration, 3);
+
+        // the lookup follows the layout manager's new span count
+        layoutManager.setSpanCount(5);
+        layout(recyclerView);
+        assertGridHeaders(adapter, recyclerView, decoration, 5);
+    }
+
+    @Test
+    public void customGridLookupsAreUsedAsConfigured() {
+        final SyntheticAdapter adapter = new SyntheticAdapter(400, 2);
+        final StickyHeaderDecoration decoration = new StickyHeaderDecoration(adapter);
+        final SectionSpanSizeLookup sections =
+                SectionSpanSizeLookup.forStickyHeaders(adapter, adapter, 3);
+
+        // a lookup of the app's own, whose span indices are found by scanning the span sizes
+        final GridLayoutManager.SpanSizeLookup lookup = new GridLayoutManager.SpanSizeLookup() {
+            @Override
+            public int getSpanSize(int position) {
+                return sections.getSpanSize(position);
+            }
+        };
+        final GridLayoutManager layoutManager =
+                new GridLayoutManager(RuntimeEnvironment.application, 3);
+        layoutManager.setSpanSizeLookup(lookup);
+
+        final RecyclerView recyclerView = new RecyclerView(RuntimeEnvironment.application);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+        recyclerView.addItemDecoration(decoration);
+
+        layoutManager.scrollToPositionWithOffset(50, 0);
+        layout(recyclerView);
+        assertGridHeaders(adapter, recyclerView, decoration, 3);
+        assertFalse(lookup.isSpanIndexCacheEnabled());
+    }
+
+    private static void layout(@NonNull RecyclerView recyclerView) {
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(ScrollSimulator.WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(ScrollSimulator.HEIGHT,
+                        View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, ScrollSimulator.WIDTH, ScrollSimulator.HEIGHT);
+    }
+
+    /**
+     * Checks that every section starts a row, that only the items of a section's first row make
+     * room for its header, and that each visible section draws its header exactly once.
+     */
+    private static void assertGridHeaders(@NonNull SyntheticAdapter adapter,
+            @NonNull RecyclerView recyclerView, @NonNull StickyHeaderDecoration decoration,
+            int spanCount) {
+
+        final RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        final List<Long> sections = new ArrayList<>();
+
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            final View child = recyclerView.getChildAt(i);
+            final int position = recyclerView.getChildAdapterPosition(child);
+            final long headerId = adapter.headerIdOf(position);
+
+            int offset = 0;
+            while (position - offset > 0 && adapter.headerIdOf(position - offset - 1) == headerId) {
+                offset++;
+            }
+
+            final GridLayoutManager.LayoutParams params =
+                    (GridLayoutManager.LayoutParams) child.getLayoutParams();
+            assertEquals("span index of " + position, offset % spanCount, params.getSpanIndex());
+            assertEquals("header offset of " + position,
+                    offset < spanCount ? SyntheticAdapter.HEADER_HEIGHT : 0,
+                    layoutManager.getTopDecorationHeight(child));
+
+            if (!sections.contains(headerId)) {
+                sections.add(headerId);
+            }
+        }
+
+        final ScrollSimulator.RecordingCanvas canvas = new ScrollSimulator.RecordingCanvas();
+        canvas.frame = new ScrollSimulator.Frame(0, 0, recyclerView.getChildCount());
+        decoration.onDrawOver(canvas, recyclerView, new RecyclerView.State());
+
+        final List<Long> drawn = new ArrayList<>();
+        for (ScrollSimulator.Placement placement : canvas.frame.placements) {
+            drawn.add(placement.id);
+        }
+
+        assertEquals(sections, drawn);
+    }
+
+    /**
+     * Lays the sections out one item at a time, the way GridLayoutManager would with the
+     * lookup's span sizes, and checks the lookup's span and row indices against it.
+     */
+    private static void assertMatchesLayout(@NonNull int[] sizes, int spanCount) {
+        final IrregularSections sections = new IrregularSections(sizes);
+        final SyntheticAdapter adapter = new SyntheticAdapter(sections.itemCount(), 1);
+        final SectionSpanSizeLookup lookup =
+                SectionSpanSizeLookup.forStickyHeaders(adapter, sections, spanCount);
+
+        int span = 0;
+        int row = 0;
+        int position = 0;
+
+        for (int size : sizes) {
+            for (int i = 0; i < size; i++, position++) {
+                final int spanSize = lookup.getSpanSize(position);
+
+                if (span + spanSize > spanCount) {
+                    span = 0;
+                    row++;
+                }
+
+                assertEquals("span index of " + position, span,
+                        lookup.getSpanIndex(position, spanCount));
+                assertEquals("row of " + position, row,
+                        lookup.getSpanGroupIndex(position, spanCount));
+
+                span += spanSize;
+            }
+
+            // the last item of every section fills its row
+            assertEquals(spanCount, span);
+        }
+    }
+
+    private static class IrregularSections implements StickyHeaderAdapter<SyntheticAdapter.Holder> {
+        int[] sizes;
+
+        IrregularSections(@NonNull int[] sizes) {
+            this.sizes = sizes;
+        }
+
+        int itemCount() {
+            int count = 0;
+            for (int size : sizes) {
+                count += size;
+            }
+            return count;
+        }
+
+        @Override
+        public long getHeaderId(int position) {
+            for (int i = 0; i < sizes.length; i++) {
+                if (position < sizes[i]) {
+                    return i;
+                }
+                position -= sizes[i];
+            }
+            return sizes.length;
+        }
+
+        @NonNull
+        @Override
+        public SyntheticAdapter.Holder onCreateHeaderViewHolder(@NonNull ViewGroup parent) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onBindHeaderViewHolder(@NonNull SyntheticAdapter.Holder viewHolder,
+                int position) {
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SectionedHeadersTest {
+
+    @Test
+    public void positionsResolveToTheirSections() {
+        final SectionedHeaders headers = new SectionedHeaders(new Sections(2, 5, 6, 20));
+
+        assertEquals(StickyHeaderDecoration.NO_HEADER_ID, headers.getHeaderId(0));
+        assertEquals(StickyHeaderDecoration.NO_HEADER_ID, headers.getHeaderId(1));
+        assertEquals(0, headers.getHeaderId(2));
+        assertEquals(0, headers.getHeaderId(4));
+        assertEquals(1, headers.getHeaderId(5));
+        assertEquals(2, headers.getHeaderId(6));
+        assertEquals(2, headers.getHeaderId(19));
+        assertEquals(3, headers.getHeaderId(20));
+        assertEquals(3, headers.getHeaderId(1_000));
+    }
+
+    @Test
+    public void rangesMatchSinglePositions() {
+        final SectionedHeaders headers = new SectionedHeaders(new Sections(2, 5, 6, 20));
+        final long[] ids = new long[30];
+
+        for (int start = 0; start < 10; start++) {
+            headers.getHeaderIds(start, ids.length, ids);
+
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(headers.getHeaderId(start + i), ids[i]);
+            }
+        }
+    }
+
+    @Test
+    public void onlyMovedSectionsReportAChange() {
+        final Sections sections = new Sections(0, 10, 20);
+        final SectionedHeaders headers = new SectionedHeaders(sections);
+
+        headers.update();
+        assertFalse(headers.takeChange());
+
+        // an item changed in place, the sections are the same
+        headers.onItemRangeChanged(3, 1);
+        headers.update();
+        assertFalse(headers.takeChange());
+
+        sections.starts = new int[]{0, 11, 21};
+        headers.onItemRangeInserted(4, 1);
+        assertEquals(1, headers.getHeaderId(11));
+        assertTrue(headers.takeChange());
+        assertFalse(headers.takeChange());
+
+        headers.onChanged();
+        headers.update();
+        assertTrue(headers.takeChange());
+    }
+
+    private static class Sections implements SectionedHeaderAdapter<RecyclerView.ViewHolder> {
+        int[] starts;
+
+        Sections(int... starts) {
+            this.starts = starts;
+        }
+
+        @Override
+        public int getSectionCount() {
+            return starts.length;
+        }
+
+        @Override
+        public int getSectionStart(int section) {
+            return starts[section];
+        }
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateSectionHeader(@NonNull ViewGroup parent) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) {
+            };
+        }
+
+        @Override
+        public void onBindSectionHeader(@NonNull RecyclerView.ViewHolder viewHolder,
+                int section) {
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drives a RecyclerView with a LinearLayoutManager and a header decoration through a scroll, one
+ * deterministic step at a time, and records for every frame where each header was drawn and
+ * how much work the decoration did.
+ */
+final class ScrollSimulator {
+    static final int WIDTH = 480;
+    static final int HEIGHT = 800;
+
+    private final SyntheticAdapter adapter;
+    private final RecyclerView.ItemDecoration decoration;
+    private final RecyclerView recyclerView;
+    private final LinearLayoutManager layoutManager;
+    private final RecyclerView.State state = new RecyclerView.State();
+    private final RecordingCanvas canvas = new RecordingCanvas();
+    private int width = WIDTH;
+
+    // the totals at the end of the previous frame, to report each frame's share
+    private DecorationMetrics metrics;
+    private long creates;
+    private long binds;
+    private long measures;
+    private long hits;
+    private long misses;
+    private long lookups;
+    private long drawn;
+
+    ScrollSimulator(@NonNull SyntheticAdapter adapter, @NonNull StickyHeaderDecoration decoration) {
+        this(adapter, (RecyclerView.ItemDecoration) decoration);
+        decoration.setMetricsListener(new MetricsCapture());
+    }
+
+    ScrollSimulator(@NonNull SyntheticAdapter adapter, @NonNull DoubleHeaderDecoration decoration) {
+        this(adapter, (RecyclerView.ItemDecoration) decoration);
+        decoration.setMetricsListener(new MetricsCapture());
+    }
+
+    ScrollSimulator(@NonNull SyntheticAdapter adapter,
+            @NonNull HierarchicalHeaderDecoration decoration) {
+        this(adapter, (RecyclerView.ItemDecoration) decoration);
+        decoration.setMetricsListener(new MetricsCapture());
+    }
+
+    private ScrollSimulator(@NonNull SyntheticAdapter adapter,
+            @NonNull RecyclerView.ItemDecoration decoration) {
+
+        this.adapter = adapter;
+        this.decoration = decoration;
+        this.layoutManager = new LinearLayoutManager(RuntimeEnvironment.application);
+        this.recyclerView = new RecyclerView(RuntimeEnvironment.application);
+
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+        recyclerView.addItemDecoration(decoration);
+        layout();
+    }
+
+    @NonNull
+    RecyclerView recyclerView() {
+        return recyclerView;
+    }
+
+    /**
+     * Jumps to the given position, placing it at the top of the list, and draws a frame.
+     */
+    @NonNull
+    Frame scrollToPosition(int position) {
+        layoutManager.scrollToPositionWithOffset(position, 0);
+        layout();
+        return draw();
+    }
+
+    /**
+     * Scrolls by the given number of pixels and draws a frame.
+     */
+    @NonNull
+    Frame step(int dy) {
+        recyclerView.scrollBy(0, dy);
+        return draw();
+    }
+
+    /**
+     * Measures the list at a new width without laying it out, the way a parent measures it ahead
+     * of the next layout pass, so the following steps scroll at the new width.
+     */
+    void resize(int width) {
+        this.width = width;
+        measure();
+    }
+
+    /**
+     * Lays the list out again where it is and draws a frame.
+     */
+    @NonNull
+    Frame relayout() {
+        layout();
+        return draw();
+    }
+
+    /**
+     * Sets the clip the canvas reports to the decoration on the following frames, such as the
+     * dirty region of a partial redraw.
+     *
+     * @param clip the clip, or null for a canvas that reports none
+     */
+    void clip(@Nullable Rect clip) {
+        canvas.clip = clip;
+    }
+
+    /**
+     * Scrolls in the given number of equal steps, drawing a frame after each.
+     */
+    @NonNull
+    List<Frame> scroll(int steps, int dy) {
+        final List<Frame> frames = new ArrayList<>(steps);
+
+        for (int i = 0; i < steps; i++) {
+            frames.add(step(dy));
+        }
+
+        return frames;
+    }
+
+    private void layout() {
+        measure();
+        recyclerView.layout(0, 0, width, HEIGHT);
+    }
+
+    private void measure() {
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+    }
+
+    @NonNull
+    private Frame draw() {
+        final View first = recyclerView.getChildAt(0);
+        final Frame frame = new Frame(
+                recyclerView.getChildAdapterPosition(first),
+                (int) first.getY(),
+                recyclerView.getChildCount());
+
+        canvas.frame = frame;
+        decoration.onDrawOver(canvas, recyclerView, state);
+        canvas.frame = null;
+
+        frame.creates = metrics.headerCreates() - creates;
+        frame.binds = metrics.headerBinds() - binds;
+        frame.measures = metrics.headerMeasures() - measures;
+        frame.cacheHits = metrics.cacheHits() - hits;
+        frame.cacheMisses = metrics.cacheMisses() - misses;
+        frame.headerIdLookups = adapter.headerIdLookups - lookups;
+        frame.drawn = metrics.drawnPerFrame().sum() - drawn;
+
+        creates = metrics.headerCreates();
+        binds = metrics.headerBinds();
+        measures = metrics.headerMeasures();
+        hits = metrics.cacheHits();
+        misses = metrics.cacheMisses();
+        lookups = adapter.headerIdLookups;
+        drawn = metrics.drawnPerFrame().sum();
+
+        return frame;
+    }
+
+    private class MetricsCapture implements DecorationMetrics.Listener {
+        @Override
+        public void onFrameDrawn(@NonNull DecorationMetrics metrics) {
+            ScrollSimulator.this.metrics = metrics;
+        }
+    }
+
+    /**
+     * The headers drawn in one frame and the work done to draw them. The work counters include
+     * the item offset requests made while scrolling to the frame.
+     */
+    static final class Frame {
+        final int firstPosition;
+        final int firstTop;
+        final int childCount;
+        final List<Placement> placements = new ArrayList<>();
+
+        long creates;
+        long binds;
+        long measures;
+        long cacheHits;
+        long cacheMisses;
+        long headerIdLookups;
+        long drawn;
+
+        Frame(int firstPosition, int firstTop, int childCount) {
+            this.firstPosition = firstPosition;
+            this.firstTop = firstTop;
+            this.childCount = childCount;
+        }
+
+        /**
+         * @return the highest drawn header of the given kind, or null if none was drawn
+         */
+        Placement topmost(boolean subHeader) {
+            Placement topmost = null;
+
+            for (Placement placement : placements) {
+                if (placement.subHeader == subHeader
+                        && (topmost == null || placement.top < topmost.top)) {
+                    topmost = placement;
+                }
+            }
+
+            return topmost;
+        }
+    }
+
+    /**
+     * Where a header was drawn, relative to the RecyclerView.
+     */
+    static final class Placement {
+        final long id;
+        final boolean subHeader;
+        final int level;
+        final int left;
+        final int top;
+        final int width;
+        final int height;
+
+        Placement(long id, boolean subHeader, int level, int left, int top, int width,
+                int height) {
+
+            this.id = id;
+            this.subHeader = subHeader;
+            this.level = level;
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public String toString() {
+            return (subHeader ? "subheader " : "header ") + id + " at " + left + "," + top;
+        }
+    }
+
+    /**
+     * A canvas that follows the translations applied to it, so header views can report the
+     * position they are drawn at, and that reports the clip it was given, if any.
+     */
+    static final class RecordingCanvas extends Canvas {
+        private float[] dx = new float[16];
+        private float[] dy = new float[16];
+        private int depth;
+
+        Frame frame;
+        Rect clip;
+
+        @Override
+        public boolean getClipBounds(@NonNull Rect bounds) {
+            if (clip == null) {
+                return super.getClipBounds(bounds);
+            }
+
+            bounds.set(clip);
+            return true;
+        }
+
+        @Override
+        public int save() {
+            if (depth + 1 == dx.length) {
+                dx = Arrays.copyOf(dx, dx.length * 2);
+                dy = Arrays.copyOf(dy, dy.length * 2);
+            }
+
+            dx[depth + 1] = dx[depth];
+            dy[depth + 1] = dy[depth];
+            depth++;
+            return super.save();
+        }
+
+        @Override
+        public void restore() {
+            depth--;
+            super.restore();
+        }
+
+        @Override
+        public void translate(float x, float y) {
+            dx[depth] += x;
+            dy[depth] += y;
+            super.translate(x, y);
+        }
+
+        void onHeaderDrawn(@NonNull SyntheticAdapter.HeaderView header) {
+            if (frame != null) {
+                frame.placements.add(new Placement(header.id, header.subHeader, header.level,
+                        (int) dx[depth], (int) dy[depth], header.getWidth(), header.getHeight()));
+            }
+        }
+    }
+}
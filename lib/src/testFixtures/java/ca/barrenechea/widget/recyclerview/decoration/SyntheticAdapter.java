@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * An adapter of any size whose header ids are computed from the position: a subheader every
+ * {@code sectionSize} items and a header every {@code SUB_SECTIONS} subheader sections. Header
+ * views report where they are drawn to a {@link ScrollSimulator.RecordingCanvas}, and header id
+ * lookups are counted.
+ * <p>
+ * Shared by the library tests and the benchmark module.
+ */
+public class SyntheticAdapter extends RecyclerView.Adapter<SyntheticAdapter.Holder>
+        implements StickyHeaderAdapter<SyntheticAdapter.Holder>,
+        DoubleHeaderAdapter<SyntheticAdapter.Holder, SyntheticAdapter.Holder>,
+        HierarchicalHeaderAdapter<SyntheticAdapter.Holder> {
+
+    static final int SUB_SECTIONS = 4;
+    static final int ITEM_HEIGHT = 48;
+    static final int HEADER_HEIGHT = 32;
+    static final int SUB_HEADER_HEIGHT = 24;
+
+    private final int itemCount;
+    private final int sectionSize;
+
+    long headerIdLookups;
+
+    public SyntheticAdapter(int itemCount, int sectionSize) {
+        this.itemCount = itemCount;
+        this.sectionSize = sectionSize;
+    }
+
+    /**
+     * @return the sticky header id, or the double header id, of the given position
+     */
+    long headerIdOf(int position) {
+        return position / ((long) sectionSize * SUB_SECTIONS);
+    }
+
+    /**
+     * @return the subheader id of the given position
+     */
+    long subHeaderIdOf(int position) {
+        return position / sectionSize;
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        final View view = new View(parent.getContext());
+        view.setLayoutParams(new RecyclerView.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+        return new Holder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull Holder holder, int position) {
+    }
+
+    @Override
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    @Override
+    public long getHeaderId(int position) {
+        headerIdLookups++;
+        return headerIdOf(position);
+    }
+
+    @Override
+    public long getSubHeaderId(int position) {
+        headerIdLookups++;
+        return subHeaderIdOf(position);
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateHeaderViewHolder(@NonNull ViewGroup parent) {
+        return new Holder(new HeaderView(parent.getContext(), false, HEADER_HEIGHT));
+    }
+
+    @Override
+    public void onBindHeaderViewHolder(@NonNull Holder viewHolder, int position) {
+        ((HeaderView) viewHolder.itemView).id = headerIdOf(position);
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateHeaderHolder(@NonNull ViewGroup parent) {
+        return new Holder(new HeaderView(parent.getContext(), false, HEADER_HEIGHT));
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateSubHeaderHolder(@NonNull ViewGroup parent) {
+        return new Holder(new HeaderView(parent.getContext(), true, SUB_HEADER_HEIGHT));
+    }
+
+    @Override
+    public void onBindHeaderHolder(@NonNull Holder viewHolder, int position) {
+        ((HeaderView) viewHolder.itemView).id = headerIdOf(position);
+    }
+
+    @Override
+    public void onBindSubHeaderHolder(@NonNull Holder viewHolder, int position) {
+        ((HeaderView) viewHolder.itemView).id = subHeaderIdOf(position);
+    }
+
+    /**
+     * Two levels, the double headers and subheaders.
+     */
+    @Override
+    public int getLevelCount() {
+        return 2;
+    }
+
+    @Override
+    public long getHeaderId(int level, int position) {
+        return level == 0 ? getHeaderId(position) : getSubHeaderId(position);
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateHeaderHolder(@NonNull ViewGroup parent, int level) {
+        return level == 0 ? onCreateHeaderHolder(parent) : onCreateSubHeaderHolder(parent);
+    }
+
+    @Override
+    public void onBindHeaderHolder(@NonNull Holder viewHolder, int level, int position) {
+        if (level == 0) {
+            onBindHeaderHolder(viewHolder, position);
+        } else {
+            onBindSubHeaderHolder(viewHolder, position);
+        }
+    }
+
+    public static class Holder extends RecyclerView.ViewHolder {
+        Holder(@NonNull View itemView) {
+            super(itemView);
+        }
+    }
+
+    /**
+     * A header view that knows its level and the id it was bound to.
+     */
+    static class HeaderView extends View {
+        final boolean subHeader;
+        final int level;
+        long id = StickyHeaderDecoration.NO_HEADER_ID;
+
+        HeaderView(@NonNull Context context, boolean subHeader, int height) {
+            this(context, subHeader ? 1 : 0, height);
+        }
+
+        HeaderView(@NonNull Context context, int level, int height) {
+            super(context);
+            this.subHeader = level > 0;
+            this.level = level;
+            setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, height));
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            super.draw(canvas);
+
+            if (canvas instanceof ScrollSimulator.RecordingCanvas) {
+                ((ScrollSimulator.RecordingCanvas) canvas).onHeaderDrawn(this);
+            }
+        }
+    }
+}